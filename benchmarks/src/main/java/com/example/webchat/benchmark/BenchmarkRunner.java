@@ -0,0 +1,46 @@
+package com.example.webchat.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试入口：默认把结果以JSON格式写入 target/jmh/{bench.label}.json，
+ * 方便对比不同提交之间的性能变化。其余参数与JMH命令行一致，可直接传入，
+ * 或通过 -Dbench.args="-f 1 -wi 1 ChatPipeline" 从Maven传入
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        String extraArgs = System.getProperty("bench.args", "").trim();
+        if (!extraArgs.isEmpty()) {
+            args = Stream.concat(Arrays.stream(args), Arrays.stream(extraArgs.split("\\s+"))).toArray(String[]::new);
+        }
+        CommandLineOptions cli = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cli);
+
+        // 命令行未指定结果文件时，按标签输出JSON
+        if (!cli.getResult().hasValue()) {
+            File outputDir = new File(System.getProperty("bench.output", "target/jmh"));
+            outputDir.mkdirs();
+            String label = System.getProperty("bench.label", "local");
+            builder.result(new File(outputDir, label + ".json").getPath());
+        }
+        if (!cli.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+
+        Runner runner = new Runner(builder.build());
+        if (cli.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.webchat.benchmark;
+
+import com.example.webchat.entity.Message;
+import com.example.webchat.entity.Room;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试共用的数据构造工具
+ */
+final class BenchmarkSupport {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz 你好世界欢迎来到聊天室0123456789";
+
+    private BenchmarkSupport() {
+    }
+
+    // 与Spring Boot自动配置的ObjectMapper保持一致（日期不输出为时间戳）
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    static String randomContent(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    // 构造一页历史消息，内容长度10~200字符
+    static List<Message> messages(int count, long roomId, int userCount, Random random) {
+        List<Message> messages = new ArrayList<>(count);
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < count; i++) {
+            long senderId = 1 + random.nextInt(userCount);
+            Message message = new Message();
+            message.setId((long) i + 1);
+            message.setRoomId(roomId);
+            message.setSenderId(senderId);
+            message.setSenderName("user" + senderId);
+            message.setContent(randomContent(random, 10 + random.nextInt(191)));
+            message.setMessageType("text");
+            message.setCreatedAt(start.plusSeconds(i * 7L));
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    static List<Room> rooms(int count, Random random) {
+        List<Room> rooms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Room room = new Room();
+            room.setId((long) i + 1);
+            room.setName("room-" + (i + 1));
+            room.setDescription(randomContent(random, 40 + random.nextInt(100)));
+            room.setIsPrivate(random.nextInt(10) == 0);
+            room.setCreatedBy(1L);
+            room.setCreatedAt(LocalDateTime.now().minusDays(random.nextInt(365)));
+            rooms.add(room);
+        }
+        return rooms;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.webchat.benchmark;
+
+import com.example.webchat.controller.ChatController;
+import com.example.webchat.dto.MessageAck;
+import com.example.webchat.entity.Message;
+import com.example.webchat.metrics.ChatMetrics;
+import com.example.webchat.repository.MessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发送房间消息的完整处理链路：调用 ChatController.sendMessage，包括幂等键抢占、用户和房间查询（嵌入式H2）、
+ * 续传缓冲区追加、序列化并发布到房间主题、提及解析和采样日志。
+ * 消息保存使用只分配ID的内存仓库，测量结果不含消息表写入，也不随测试时间增长
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 3)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatPipelineBenchmark {
+
+    private static final int ROOM_COUNT = 8;
+    private static final int USER_COUNT = 50;
+
+    @Param({"16", "256", "1000"})
+    private int contentLength;
+
+    // 消息中是否带 @提及，提及解析只在内容包含'@'时执行
+    @Param({"false", "true"})
+    private boolean mention;
+
+    private ConfigurableApplicationContext context;
+    private ChatController chatController;
+    private String content;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(PipelineContext.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:pipeline;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.sql.init.mode=always",
+                        "spring.sql.init.schema-locations=classpath:schema.sql",
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "spring.jpa.show-sql=false",
+                        "webchat.files.storage-dir=target/bench-files",
+                        "logging.level.root=WARN",
+                        // 采样日志按生产配置输出，写入文件而不是控制台，避免干扰JMH输出
+                        "logging.level.com.example.webchat.controller=INFO",
+                        "logging.pattern.console=",
+                        "logging.file.name=target/bench-logs/chat-pipeline.log")
+                .run();
+        chatController = context.getBean(ChatController.class);
+        loadData(context.getBean(JdbcTemplate.class));
+        String text = BenchmarkSupport.randomContent(new Random(42), contentLength);
+        content = mention ? "@user2 " + text : text;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private void loadData(JdbcTemplate jdbcTemplate) {
+        for (int i = 1; i <= USER_COUNT; i++) {
+            jdbcTemplate.update("INSERT INTO users (username, email, password_hash) VALUES (?, ?, ?)",
+                    "user" + i, "user" + i + "@example.com", "$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchm");
+        }
+        for (int i = 1; i <= ROOM_COUNT; i++) {
+            jdbcTemplate.update("INSERT INTO rooms (name, description, is_private, created_by) VALUES (?, ?, ?, ?)",
+                    "room-" + i, "benchmark room " + i, false, 1);
+        }
+    }
+
+    @Benchmark
+    public MessageAck sendMessage() {
+        long n = ++sequence;
+        // 模拟前端发来的消息，每条带新的幂等键
+        Message message = new Message();
+        message.setContent(content);
+        message.setMessageType("CHAT");
+        message.setClientMessageId("bench-" + n);
+        return chatController.sendMessage(message, (n % ROOM_COUNT) + 1, session("user" + ((n % USER_COUNT) + 1)));
+    }
+
+    private static SimpMessageHeaderAccessor session(String username) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("username", username);
+        accessor.setSessionAttributes(attributes);
+        return accessor;
+    }
+
+    // 与 HistoryQueryBenchmark 相同的组件范围；消息仓库替换为内存实现，消息模板照常序列化但通道没有订阅者
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan("com.example.webchat.entity")
+    @EnableJpaRepositories("com.example.webchat.repository")
+    @ComponentScan({"com.example.webchat.service", "com.example.webchat.websocket"})
+    @Import({ChatController.class, ChatMetrics.class})
+    static class PipelineContext {
+
+        @Bean
+        SimpMessagingTemplate simpMessagingTemplate() {
+            SimpMessagingTemplate template = new SimpMessagingTemplate(new ExecutorSubscribableChannel());
+            // 与WebSocket消息代理使用的转换器一致
+            MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+            converter.setObjectMapper(BenchmarkSupport.objectMapper());
+            template.setMessageConverter(converter);
+            return template;
+        }
+
+        // 只实现 save：分配自增ID后原样返回，其余方法在发送路径上不会被调用
+        @Bean
+        @Primary
+        MessageRepository inMemoryMessageRepository() {
+            AtomicLong ids = new AtomicLong();
+            return (MessageRepository) Proxy.newProxyInstance(MessageRepository.class.getClassLoader(),
+                    new Class<?>[]{MessageRepository.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "save":
+                                Message message = (Message) args[0];
+                                message.setId(ids.incrementAndGet());
+                                return message;
+                            case "toString":
+                                return "InMemoryMessageRepository";
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+}
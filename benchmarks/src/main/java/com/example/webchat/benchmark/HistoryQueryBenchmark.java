@@ -0,0 +1,158 @@
+package com.example.webchat.benchmark;
+
+import com.example.webchat.controller.ChatController;
+import com.example.webchat.entity.Message;
+import com.example.webchat.metrics.ChatMetrics;
+import com.example.webchat.repository.MessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 历史消息读取：嵌入式H2（MySQL兼容模式）中预先装载多个房间、数百用户的消息数据，
+ * 分别测量仓库查询本身和 ChatController.getRoomMessages 完整读取路径（含发送者名字回填）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class HistoryQueryBenchmark {
+
+    private static final int ROOM_COUNT = 8;
+    private static final int USER_COUNT = 300;
+
+    @Param({"200", "2000"})
+    private int messagesPerRoom;
+
+    private ConfigurableApplicationContext context;
+    private MessageRepository messageRepository;
+    private ChatController chatController;
+    private long nextRoom;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(HistoryContext.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.sql.init.mode=always",
+                        "spring.sql.init.schema-locations=classpath:schema.sql",
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "spring.jpa.show-sql=false",
+                        "webchat.files.storage-dir=target/bench-files",
+                        "logging.level.root=WARN")
+                .run();
+        messageRepository = context.getBean(MessageRepository.class);
+        chatController = context.getBean(ChatController.class);
+        loadData(context.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // 批量写入用户、房间和消息，时间戳递增以贴近真实的写入顺序
+    private void loadData(JdbcTemplate jdbcTemplate) {
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.now().minusDays(30);
+
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 1; i <= USER_COUNT; i++) {
+            users.add(new Object[]{"user" + i, "user" + i + "@example.com", "$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchm",
+                    Timestamp.valueOf(start), false, Timestamp.valueOf(start)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, email, password_hash, created_at, is_online, last_activity) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", users);
+
+        List<Object[]> rooms = new ArrayList<>();
+        for (int i = 1; i <= ROOM_COUNT; i++) {
+            rooms.add(new Object[]{"room-" + i, "benchmark room " + i, false, 1 + random.nextInt(USER_COUNT), Timestamp.valueOf(start)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO rooms (name, description, is_private, created_by, created_at) VALUES (?, ?, ?, ?, ?)", rooms);
+
+        List<Object[]> messages = new ArrayList<>();
+        for (int i = 0; i < ROOM_COUNT * messagesPerRoom; i++) {
+            messages.add(new Object[]{1 + random.nextInt(ROOM_COUNT), 1 + random.nextInt(USER_COUNT),
+                    BenchmarkSupport.randomContent(random, 10 + random.nextInt(191)), "text",
+                    Timestamp.valueOf(start.plusSeconds(i * 3L))});
+            if (messages.size() == 1000) {
+                insertMessages(jdbcTemplate, messages);
+                messages.clear();
+            }
+        }
+        insertMessages(jdbcTemplate, messages);
+    }
+
+    private void insertMessages(JdbcTemplate jdbcTemplate, List<Object[]> messages) {
+        jdbcTemplate.batchUpdate("INSERT INTO messages (room_id, sender_id, content, message_type, created_at) VALUES (?, ?, ?, ?, ?)",
+                messages);
+    }
+
+    private long nextRoomId() {
+        return (nextRoom++ % ROOM_COUNT) + 1;
+    }
+
+    @Benchmark
+    public List<Message> repositoryFindByRoom() {
+        return messageRepository.findByRoomIdOrderByCreatedAtAsc(nextRoomId());
+    }
+
+    @Benchmark
+    public List<Message> controllerGetRoomMessages() {
+        return chatController.getRoomMessages(nextRoomId(), null);
+    }
+
+    // 表结构与索引来自主应用的 schema.sql（与h2配置文件相同），查询计划与生产一致；
+    // 扫描服务层和会话组件以满足ChatController的依赖，不扫描config包，不启动Web服务器和消息代理
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan("com.example.webchat.entity")
+    @EnableJpaRepositories("com.example.webchat.repository")
+    @ComponentScan({"com.example.webchat.service", "com.example.webchat.websocket"})
+    @Import({ChatController.class, ChatMetrics.class})
+    static class HistoryContext {
+
+        // 历史查询不发送消息，提供一个无订阅者的模板满足依赖即可
+        @Bean
+        SimpMessagingTemplate simpMessagingTemplate() {
+            return new SimpMessagingTemplate(new ExecutorSubscribableChannel());
+        }
+    }
+}
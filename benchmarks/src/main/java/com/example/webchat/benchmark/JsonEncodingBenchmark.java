@@ -0,0 +1,58 @@
+package com.example.webchat.benchmark;
+
+import com.example.webchat.entity.Message;
+import com.example.webchat.entity.Room;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REST接口返回的消息列表（GET /rooms/{roomId}/messages）和房间列表（GET /rooms）的JSON编码
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonEncodingBenchmark {
+
+    @Param({"50", "500", "5000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<Message> messages;
+    private List<Room> rooms;
+
+    @Setup
+    public void setup() {
+        objectMapper = BenchmarkSupport.objectMapper();
+        Random random = new Random(42);
+        messages = BenchmarkSupport.messages(size, 1L, 200, random);
+        rooms = BenchmarkSupport.rooms(size, random);
+    }
+
+    @Benchmark
+    public byte[] encodeMessages() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] encodeRooms() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(rooms);
+    }
+}
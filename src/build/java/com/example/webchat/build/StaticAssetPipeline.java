@@ -0,0 +1,232 @@
+package com.example.webchat.build;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 构建时的静态资源处理，在 process-classes 阶段由 exec-maven-plugin 以单文件源码方式运行：
+ * 1. 按内容MD5给css/js生成带版本号的引用路径（name-md5.ext，与Spring ContentVersionStrategy的格式和算法一致），
+ *    改写页面中的引用和ES模块之间的import，被引用的文件先处理，引用方的哈希覆盖改写后的内容；
+ * 2. 为页面、css、js以及页面引用的webjars文件生成 .gz 和 .br 预压缩文件，由 EncodedResourceResolver 按 Accept-Encoding 选择
+ *
+ * 参数：静态资源源目录、静态资源输出目录、webjars解包目录、webjars预压缩文件输出目录
+ */
+public class StaticAssetPipeline {
+
+    private static final Pattern JS_IMPORT = Pattern.compile(
+            "((?:import|export)\\b[^'\";]*?\\bfrom\\s*|import\\s*\\(\\s*|import\\s+)(['\"])(\\.{1,2}/[^'\"]+\\.js)\\2");
+    private static final Pattern PAGE_REFERENCE = Pattern.compile("((?:src|href)\\s*=\\s*)\"(/[^\"?#]+)\"");
+
+    private final Path sourceDir;
+    private final Path outputDir;
+    private final Path webjarSourceDir;
+    private final Path webjarOutputDir;
+    private final boolean brotli;
+
+    // 相对路径 -> 内容MD5
+    private final Map<String, String> versions = new HashMap<>();
+    private final Set<String> inProgress = new HashSet<>();
+    private final Set<String> webjarReferences = new LinkedHashSet<>();
+    private final List<String> report = new ArrayList<>();
+
+    public StaticAssetPipeline(Path sourceDir, Path outputDir, Path webjarSourceDir, Path webjarOutputDir, boolean brotli) {
+        this.sourceDir = sourceDir;
+        this.outputDir = outputDir;
+        this.webjarSourceDir = webjarSourceDir;
+        this.webjarOutputDir = webjarOutputDir;
+        this.brotli = brotli;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            throw new IllegalArgumentException("用法: StaticAssetPipeline <源目录> <输出目录> <webjars解包目录> <webjars输出目录>");
+        }
+        boolean brotli = Brotli4jLoader.isAvailable();
+        if (!brotli) {
+            // 本地库与构建机平台不符时只生成gzip，通过 -Dbrotli4j.native 指定平台
+            System.out.println("[asset-pipeline] brotli不可用，跳过.br: " + Brotli4jLoader.getUnavailabilityCause());
+        }
+        new StaticAssetPipeline(Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2]), Paths.get(args[3]), brotli).run();
+    }
+
+    public void run() throws IOException {
+        List<String> assets;
+        List<String> pages;
+        try (Stream<Path> files = Files.walk(sourceDir)) {
+            List<String> all = files.filter(Files::isRegularFile)
+                    .map(p -> sourceDir.relativize(p).toString().replace('\\', '/'))
+                    .sorted()
+                    .collect(Collectors.toList());
+            assets = all.stream().filter(p -> p.endsWith(".js") || p.endsWith(".css")).collect(Collectors.toList());
+            pages = all.stream().filter(p -> p.endsWith(".html")).collect(Collectors.toList());
+        }
+
+        for (String asset : assets) {
+            version(asset);
+        }
+        for (String page : pages) {
+            String content = rewritePage(read(sourceDir.resolve(page)));
+            write(outputDir.resolve(page), content.getBytes(StandardCharsets.UTF_8));
+        }
+        for (String webjar : webjarReferences) {
+            Path file = webjarSourceDir.resolve(webjar);
+            if (!Files.isRegularFile(file)) {
+                throw new IllegalStateException("页面引用的webjars文件不存在: /webjars/" + webjar);
+            }
+            compress(webjarOutputDir.resolve(webjar), Files.readAllBytes(file));
+        }
+
+        report.forEach(line -> System.out.println("[asset-pipeline] " + line));
+    }
+
+    // 处理一个css/js文件：先改写它import的模块，再写出并计算最终内容的MD5
+    private String version(String asset) throws IOException {
+        String version = versions.get(asset);
+        if (version != null) {
+            return version;
+        }
+        if (!inProgress.add(asset)) {
+            throw new IllegalStateException("模块循环引用，无法按内容生成版本号: " + asset);
+        }
+        String content = read(sourceDir.resolve(asset));
+        if (asset.endsWith(".js")) {
+            content = rewriteImports(asset, content);
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        write(outputDir.resolve(asset), bytes);
+        version = md5(bytes);
+        versions.put(asset, version);
+        inProgress.remove(asset);
+        return version;
+    }
+
+    private String rewriteImports(String asset, String content) throws IOException {
+        Matcher matcher = JS_IMPORT.matcher(content);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String specifier = matcher.group(3);
+            Path parent = Paths.get(asset).getParent();
+            String target = (parent == null ? Paths.get(specifier) : parent.resolve(specifier))
+                    .normalize().toString().replace('\\', '/');
+            if (!Files.isRegularFile(sourceDir.resolve(target))) {
+                throw new IllegalStateException(asset + " 引用的模块不存在: " + specifier);
+            }
+            String quote = matcher.group(2);
+            String replacement = matcher.group(1) + quote + versionedPath(specifier, version(target)) + quote;
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private String rewritePage(String content) throws IOException {
+        Matcher matcher = PAGE_REFERENCE.matcher(content);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String path = matcher.group(2);
+            String replacement = matcher.group(0);
+            if (path.startsWith("/webjars/")) {
+                // webjars路径本身带版本号，只需预压缩
+                webjarReferences.add(path.substring("/webjars/".length()));
+            } else if (path.endsWith(".js") || path.endsWith(".css")) {
+                String asset = path.substring(1);
+                if (!Files.isRegularFile(sourceDir.resolve(asset))) {
+                    throw new IllegalStateException("页面引用的资源不存在: " + path);
+                }
+                replacement = matcher.group(1) + "\"" + versionedPath(path, version(asset)) + "\"";
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    // chat.js -> chat-<md5>.js，目录部分保持不变
+    private static String versionedPath(String path, String version) {
+        int dot = path.lastIndexOf('.');
+        return path.substring(0, dot) + "-" + version + path.substring(dot);
+    }
+
+    private void write(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.write(target, bytes);
+        compress(target, bytes);
+    }
+
+    // 只保留比原文件小的压缩结果
+    private void compress(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(target.getParent());
+        StringBuilder line = new StringBuilder(target.getFileName() + ": " + bytes.length);
+
+        byte[] gzip = gzip(bytes);
+        Path gzipFile = target.resolveSibling(target.getFileName() + ".gz");
+        if (gzip.length < bytes.length) {
+            Files.write(gzipFile, gzip);
+            line.append(" gz=").append(gzip.length);
+        } else {
+            Files.deleteIfExists(gzipFile);
+        }
+
+        Path brotliFile = target.resolveSibling(target.getFileName() + ".br");
+        if (brotli) {
+            byte[] br = Encoder.compress(bytes, new Encoder.Parameters().setQuality(11));
+            if (br.length < bytes.length) {
+                Files.write(brotliFile, br);
+                line.append(" br=").append(br.length);
+            } else {
+                Files.deleteIfExists(brotliFile);
+            }
+        }
+        report.add(line.toString());
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    private static String md5(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
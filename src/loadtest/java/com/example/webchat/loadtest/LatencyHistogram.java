@@ -0,0 +1,75 @@
+package com.example.webchat.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁延迟直方图：0~10ms按10微秒分桶，10ms~60s按1毫秒分桶，超出部分计入最后一个桶。
+ * 多个WebSocket接收线程可以并发记录，只在生成报告时遍历一次
+ */
+final class LatencyHistogram {
+
+    private static final long FINE_LIMIT_MICROS = 10_000;
+    private static final long FINE_STEP_MICROS = 10;
+    private static final long COARSE_LIMIT_MICROS = 60_000_000;
+    private static final long COARSE_STEP_MICROS = 1_000;
+
+    private static final int FINE_BUCKETS = (int) (FINE_LIMIT_MICROS / FINE_STEP_MICROS);
+    private static final int COARSE_BUCKETS = (int) ((COARSE_LIMIT_MICROS - FINE_LIMIT_MICROS) / COARSE_STEP_MICROS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(FINE_BUCKETS + COARSE_BUCKETS + 1);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        counts.incrementAndGet(indexOf(micros));
+        total.incrementAndGet();
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    long count() {
+        return total.get();
+    }
+
+    double maxMillis() {
+        return maxMicros.get() / 1_000.0;
+    }
+
+    // 返回分位数所在桶的上界（毫秒）
+    double percentileMillis(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= threshold) {
+                return Math.min(upperBoundMicros(i), maxMicros.get()) / 1_000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < FINE_LIMIT_MICROS) {
+            return (int) (micros / FINE_STEP_MICROS);
+        }
+        if (micros < COARSE_LIMIT_MICROS) {
+            return FINE_BUCKETS + (int) ((micros - FINE_LIMIT_MICROS) / COARSE_STEP_MICROS);
+        }
+        return FINE_BUCKETS + COARSE_BUCKETS;
+    }
+
+    private static long upperBoundMicros(int index) {
+        if (index < FINE_BUCKETS) {
+            return (index + 1) * FINE_STEP_MICROS;
+        }
+        if (index < FINE_BUCKETS + COARSE_BUCKETS) {
+            return FINE_LIMIT_MICROS + (index - FINE_BUCKETS + 1) * COARSE_STEP_MICROS;
+        }
+        return Long.MAX_VALUE;
+    }
+}
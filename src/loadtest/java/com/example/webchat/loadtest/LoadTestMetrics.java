@@ -0,0 +1,117 @@
+package com.example.webchat.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测过程中的计数器、端到端延迟和JVM堆/GC采样。
+ * 服务端与模拟客户端运行在同一个JVM中，堆和GC数据包含客户端开销
+ */
+final class LoadTestMetrics {
+
+    final LongAdder sent = new LongAdder();
+    final LongAdder delivered = new LongAdder();
+    final LongAdder sendErrors = new LongAdder();
+    final LongAdder transportErrors = new LongAdder();
+    // 发送窗口结束后才收到的投递（窗口内发送、排空阶段到达）
+    final LongAdder deliveredDuringDrain = new LongAdder();
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final AtomicLong peakHeapUsed = new AtomicLong();
+
+    // 测量窗口：只统计 [开始, 停止发送) 之间发送的消息，预热期和排空期发送的不计入；
+    // 停止发送后继续等待在途消息投递，直到测量结束
+    private volatile long measureStartNanos = Long.MAX_VALUE;
+    private volatile long sendEndNanos = Long.MAX_VALUE;
+    private volatile long measureEndNanos = Long.MAX_VALUE;
+    private Map<String, long[]> gcAtStart = new LinkedHashMap<>();
+    private Map<String, long[]> gcAtEnd = new LinkedHashMap<>();
+
+    void startMeasurement() {
+        gcAtStart = gcSnapshot();
+        peakHeapUsed.set(memory.getHeapMemoryUsage().getUsed());
+        measureStartNanos = System.nanoTime();
+    }
+
+    void stopSending() {
+        sendEndNanos = System.nanoTime();
+    }
+
+    void stopMeasurement() {
+        measureEndNanos = System.nanoTime();
+        gcAtEnd = gcSnapshot();
+    }
+
+    boolean isMeasuring(long sentNanos) {
+        return sentNanos >= measureStartNanos && sentNanos < sendEndNanos;
+    }
+
+    void onSent(long sentNanos) {
+        if (isMeasuring(sentNanos)) {
+            sent.increment();
+        }
+    }
+
+    void onDelivered(long sentNanos, long receivedNanos) {
+        if (isMeasuring(sentNanos) && receivedNanos < measureEndNanos) {
+            delivered.increment();
+            latency.record(receivedNanos - sentNanos);
+            if (receivedNanos >= sendEndNanos) {
+                deliveredDuringDrain.increment();
+            }
+        }
+    }
+
+    void sampleHeap() {
+        peakHeapUsed.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
+    // 发送窗口时长，吞吐量按此计算
+    double measuredSeconds() {
+        return (sendEndNanos - measureStartNanos) / 1_000_000_000.0;
+    }
+
+    double drainSeconds() {
+        return (measureEndNanos - sendEndNanos) / 1_000_000_000.0;
+    }
+
+    Map<String, Object> heapReport() {
+        Map<String, Object> heap = new LinkedHashMap<>();
+        heap.put("usedMb", toMb(memory.getHeapMemoryUsage().getUsed()));
+        heap.put("peakUsedMb", toMb(peakHeapUsed.get()));
+        heap.put("committedMb", toMb(memory.getHeapMemoryUsage().getCommitted()));
+        heap.put("maxMb", toMb(memory.getHeapMemoryUsage().getMax()));
+        return heap;
+    }
+
+    // 测量窗口内各收集器的GC次数和累计耗时
+    Map<String, Object> gcReport() {
+        Map<String, Object> gc = new LinkedHashMap<>();
+        gcAtEnd.forEach((name, end) -> {
+            long[] start = gcAtStart.getOrDefault(name, new long[]{0, 0});
+            Map<String, Object> collector = new LinkedHashMap<>();
+            collector.put("collections", end[0] - start[0]);
+            collector.put("timeMs", end[1] - start[1]);
+            gc.put(name, collector);
+        });
+        return gc;
+    }
+
+    private static Map<String, long[]> gcSnapshot() {
+        Map<String, long[]> snapshot = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            snapshot.put(gc.getName(), new long[]{gc.getCollectionCount(), gc.getCollectionTime()});
+        }
+        return snapshot;
+    }
+
+    private static long toMb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.webchat.loadtest;
+
+import com.example.webchat.WebChatApplication;
+import com.example.webchat.entity.Room;
+import com.example.webchat.entity.User;
+import com.example.webchat.repository.RoomRepository;
+import com.example.webchat.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.Transport;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.File;
+import java.net.CookieManager;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内STOMP压测：以h2配置启动应用（随机端口），创建 rooms × users-per-room 个模拟用户，
+ * 登录后通过 WebSocketStompClient 连接 /ws，按配置速率发送消息，
+ * 统计发送到房间内所有订阅者收到的端到端延迟分位数、吞吐量以及堆和GC情况。
+ *
+ * 参数（系统属性）：loadtest.rooms、loadtest.users-per-room、loadtest.rate（每用户每秒消息数）、
+ * loadtest.warmup / loadtest.duration（秒）、loadtest.report（JSON报告路径）
+ */
+public class LoadTestRunner {
+
+    private static final String PASSWORD = "loadtest-password";
+    private static final int CONNECT_CONCURRENCY = 64;
+
+    public static void main(String[] args) throws Exception {
+        int rooms = Integer.getInteger("loadtest.rooms", 10);
+        int usersPerRoom = Integer.getInteger("loadtest.users-per-room", 50);
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "1.0"));
+        int warmupSeconds = Integer.getInteger("loadtest.warmup", 10);
+        int durationSeconds = Integer.getInteger("loadtest.duration", 60);
+        String reportPath = System.getProperty("loadtest.report", "target/loadtest/report.json");
+
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(WebChatApplication.class)
+                .profiles("h2")
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        // 断开时服务端仍在途的帧会被客户端丢弃并打印错误，压测中无需关注
+                        "logging.level.org.springframework.web.socket.sockjs.client=OFF")
+                .run(withRandomPort(args));
+        int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        String baseUrl = "http://localhost:" + port;
+        log("应用已启动，端口 %d；房间 %d × 每房间用户 %d，每用户 %.2f 条/秒", port, rooms, usersPerRoom, rate);
+
+        LoadTestMetrics metrics = new LoadTestMetrics();
+        List<SimulatedUser> users = seed(app, rooms, usersPerRoom, metrics);
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        scheduler.setThreadNamePrefix("loadtest-");
+        scheduler.initialize();
+
+        WebSocketStompClient stompClient = stompClient();
+        try {
+            long loginStart = System.nanoTime();
+            loginAll(users, baseUrl, workers);
+            log("%d 个用户登录完成，耗时 %d ms", users.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loginStart));
+
+            long connectStart = System.nanoTime();
+            int connected = connectAll(users, stompClient, baseUrl + "/ws");
+            log("%d/%d 个STOMP会话已建立，耗时 %d ms", connected, users.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart));
+
+            // 每个用户按固定周期发送，起始时间随机错开
+            long periodMicros = (long) (1_000_000 / rate);
+            List<Future<?>> senders = new ArrayList<>();
+            for (SimulatedUser user : users) {
+                long initialDelay = ThreadLocalRandom.current().nextLong(periodMicros);
+                senders.add(scheduler.getScheduledExecutor()
+                        .scheduleAtFixedRate(user::sendChat, initialDelay, periodMicros, TimeUnit.MICROSECONDS));
+            }
+            Future<?> heapSampler = scheduler.getScheduledExecutor()
+                    .scheduleAtFixedRate(metrics::sampleHeap, 0, 1, TimeUnit.SECONDS);
+
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+            log("预热结束，开始测量 %d 秒", durationSeconds);
+            metrics.startMeasurement();
+            TimeUnit.SECONDS.sleep(durationSeconds);
+
+            senders.forEach(sender -> sender.cancel(false));
+            metrics.stopSending();
+            // 等待在途消息投递完成，排空时间单独报告，不计入吞吐量
+            TimeUnit.SECONDS.sleep(2);
+            metrics.stopMeasurement();
+            heapSampler.cancel(false);
+
+            Map<String, Object> report = report(metrics, rooms, usersPerRoom, rate, connected);
+            writeReport(report, reportPath);
+        } finally {
+            users.forEach(SimulatedUser::disconnect);
+            stompClient.stop();
+            scheduler.shutdown();
+            workers.shutdownNow();
+            app.close();
+        }
+        System.exit(0);
+    }
+
+    // properties(...) 只是默认属性，会被 application.properties 中的 server.port=8080 覆盖，
+    // 随机端口必须作为命令行参数传入；调用方显式指定了端口时保留调用方的值
+    private static String[] withRandomPort(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--server.port=")) {
+                return args;
+            }
+        }
+        String[] withPort = new String[args.length + 1];
+        withPort[0] = "--server.port=0";
+        System.arraycopy(args, 0, withPort, 1, args.length);
+        return withPort;
+    }
+
+    // 直接通过仓库写入用户和房间，所有用户共用一个BCrypt哈希以缩短准备时间
+    private static List<SimulatedUser> seed(ConfigurableApplicationContext app, int rooms, int usersPerRoom,
+                                            LoadTestMetrics metrics) {
+        UserRepository userRepository = app.getBean(UserRepository.class);
+        RoomRepository roomRepository = app.getBean(RoomRepository.class);
+        String passwordHash = new BCryptPasswordEncoder().encode(PASSWORD);
+
+        List<User> userEntities = new ArrayList<>();
+        for (int i = 0; i < rooms * usersPerRoom; i++) {
+            User user = new User();
+            user.setUsername("lt-user-" + i);
+            user.setEmail("lt-user-" + i + "@loadtest.local");
+            user.setPasswordHash(passwordHash);
+            user.setIsOnline(false);
+            userEntities.add(user);
+        }
+        userEntities = userRepository.saveAll(userEntities);
+
+        List<SimulatedUser> users = new ArrayList<>();
+        for (int r = 0; r < rooms; r++) {
+            Room room = new Room();
+            room.setName("loadtest-room-" + r);
+            room.setIsPrivate(false);
+            room.setCreatedBy(userEntities.get(r * usersPerRoom).getId());
+            room = roomRepository.save(room);
+            for (int u = 0; u < usersPerRoom; u++) {
+                users.add(new SimulatedUser(userEntities.get(r * usersPerRoom + u).getUsername(), room.getId(), metrics));
+            }
+        }
+        return users;
+    }
+
+    private static void loginAll(List<SimulatedUser> users, String baseUrl, ExecutorService workers) throws Exception {
+        // 每个用户单独的Cookie存储，避免会话互相覆盖
+        List<Future<?>> logins = new ArrayList<>();
+        for (SimulatedUser user : users) {
+            logins.add(workers.submit(() -> {
+                HttpClient httpClient = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+                user.login(httpClient, baseUrl, PASSWORD);
+                return null;
+            }));
+        }
+        for (Future<?> login : logins) {
+            login.get();
+        }
+    }
+
+    private static int connectAll(List<SimulatedUser> users, WebSocketStompClient stompClient, String wsUrl)
+            throws InterruptedException {
+        Semaphore permits = new Semaphore(CONNECT_CONCURRENCY);
+        AtomicInteger connected = new AtomicInteger();
+        for (SimulatedUser user : users) {
+            permits.acquire();
+            user.connect(stompClient, wsUrl).addCallback(
+                    session -> {
+                        connected.incrementAndGet();
+                        permits.release();
+                    },
+                    failure -> permits.release());
+        }
+        permits.acquire(CONNECT_CONCURRENCY);
+        return connected.get();
+    }
+
+    private static WebSocketStompClient stompClient() {
+        List<Transport> transports = Collections.singletonList(new WebSocketTransport(new StandardWebSocketClient()));
+        WebSocketStompClient stompClient = new WebSocketStompClient(new SockJsClient(transports));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setInboundMessageSizeLimit(1024 * 1024);
+        return stompClient;
+    }
+
+    private static Map<String, Object> report(LoadTestMetrics metrics, int rooms, int usersPerRoom, double rate,
+                                              int connected) {
+        double seconds = metrics.measuredSeconds();
+        long sent = metrics.sent.sum();
+        long delivered = metrics.delivered.sum();
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("rooms", rooms);
+        config.put("usersPerRoom", usersPerRoom);
+        config.put("ratePerUser", rate);
+        config.put("connectedSessions", connected);
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("sent", sent);
+        throughput.put("delivered", delivered);
+        throughput.put("expectedDeliveries", sent * usersPerRoom);
+        throughput.put("sentPerSecond", round(sent / seconds));
+        throughput.put("deliveredPerSecond", round(delivered / seconds));
+        throughput.put("deliveredDuringDrain", metrics.deliveredDuringDrain.sum());
+        throughput.put("sendErrors", metrics.sendErrors.sum());
+        throughput.put("transportErrors", metrics.transportErrors.sum());
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("samples", metrics.latency.count());
+        latency.put("p50Ms", metrics.latency.percentileMillis(50));
+        latency.put("p99Ms", metrics.latency.percentileMillis(99));
+        latency.put("p999Ms", metrics.latency.percentileMillis(99.9));
+        latency.put("maxMs", metrics.latency.maxMillis());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("measuredSeconds", round(seconds));
+        report.put("drainSeconds", round(metrics.drainSeconds()));
+        report.put("throughput", throughput);
+        report.put("sendToReceiveLatency", latency);
+        report.put("heap", metrics.heapReport());
+        report.put("gc", metrics.gcReport());
+        return report;
+    }
+
+    private static void writeReport(Map<String, Object> report, String reportPath) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        String json = objectMapper.writeValueAsString(report);
+        System.out.println(json);
+        File file = new File(reportPath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        objectMapper.writeValue(file, report);
+        log("报告已写入 %s", file.getAbsolutePath());
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.println("[loadtest] " + String.format(format, args));
+    }
+}
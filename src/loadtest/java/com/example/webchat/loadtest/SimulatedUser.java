@@ -0,0 +1,130 @@
+package com.example.webchat.loadtest;
+
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一个模拟用户：通过 /auth/login 登录，携带会话Cookie建立STOMP连接，
+ * 订阅房间广播、发送 addUser，之后按固定速率发送聊天消息
+ */
+final class SimulatedUser extends StompSessionHandlerAdapter {
+
+    // 消息内容前缀，后面跟发送时的 System.nanoTime()，用于计算端到端延迟
+    static final String MARKER = "lt|";
+
+    private final String username;
+    private final long roomId;
+    private final LoadTestMetrics metrics;
+    private String sessionCookie;
+    private volatile StompSession session;
+
+    SimulatedUser(String username, long roomId, LoadTestMetrics metrics) {
+        this.username = username;
+        this.roomId = roomId;
+        this.metrics = metrics;
+    }
+
+    void login(HttpClient httpClient, String baseUrl, String password) throws IOException, InterruptedException {
+        String body = "{\"username\":\"" + username + "\",\"passwordHash\":\"" + password + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for " + username + ": " + response.statusCode());
+        }
+        sessionCookie = response.headers().allValues("Set-Cookie").stream()
+                .filter(cookie -> cookie.startsWith("JSESSIONID="))
+                .map(cookie -> cookie.split(";", 2)[0])
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No session cookie for " + username));
+    }
+
+    ListenableFuture<StompSession> connect(WebSocketStompClient stompClient, String wsUrl) {
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("Cookie", sessionCookie);
+        return stompClient.connect(wsUrl, headers, this);
+    }
+
+    @Override
+    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+        this.session = session;
+        session.subscribe("/topic/chat/" + roomId + "/public", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                onMessage((Map<?, ?>) payload);
+            }
+        });
+
+        Map<String, Object> join = new HashMap<>();
+        join.put("senderName", username);
+        join.put("messageType", "JOIN");
+        session.send("/app/chat/" + roomId + "/addUser", join);
+    }
+
+    private void onMessage(Map<?, ?> message) {
+        Object content = message.get("content");
+        if (content instanceof String && ((String) content).startsWith(MARKER)) {
+            long receivedNanos = System.nanoTime();
+            long sentNanos = Long.parseLong(((String) content).substring(MARKER.length()));
+            metrics.onDelivered(sentNanos, receivedNanos);
+        }
+    }
+
+    void sendChat() {
+        StompSession current = session;
+        if (current == null || !current.isConnected()) {
+            metrics.sendErrors.increment();
+            return;
+        }
+        long sentNanos = System.nanoTime();
+        Map<String, Object> chat = new HashMap<>();
+        chat.put("content", MARKER + sentNanos);
+        chat.put("messageType", "CHAT");
+        try {
+            current.send("/app/chat/" + roomId + "/sendMessage", chat);
+            metrics.onSent(sentNanos);
+        } catch (RuntimeException e) {
+            metrics.sendErrors.increment();
+        }
+    }
+
+    void disconnect() {
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+    }
+
+    @Override
+    public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+                                Throwable exception) {
+        metrics.transportErrors.increment();
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        metrics.transportErrors.increment();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.webchat.config;
+
+import com.example.webchat.datasource.ReadYourWritesTracker;
+import com.example.webchat.datasource.ReplicaPool;
+import com.example.webchat.metrics.StartupMetrics;
+import com.example.webchat.metrics.WebSocketMetrics;
+import com.example.webchat.service.impl.MessageRetentionServiceImpl;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryBuilderCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * 启动相关配置：延迟初始化时仍需立即创建的Bean，以及生成CDS归档时启动完成即退出
+ */
+@Configuration
+public class StartupConfig {
+
+    // 指标要在启动后立即注册，带定时任务的Bean要在启动时创建才会开始调度
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(WebSocketMetrics.class, StartupMetrics.class,
+                ReplicaPool.class, ReadYourWritesTracker.class, MessageRetentionServiceImpl.class);
+    }
+
+    // 延迟模式下EntityManagerFactory在后台线程初始化。WebSocket消息通道的线程池也是Executor，
+    // Boot因此不会创建applicationTaskExecutor，需要单独提供启动用的执行器，否则仍在主线程初始化
+    @Bean
+    @ConditionalOnProperty(name = "spring.data.jpa.repositories.bootstrap-mode", havingValue = "deferred")
+    public EntityManagerFactoryBuilderCustomizer jpaBootstrapExecutor() {
+        return builder -> builder.setBootstrapExecutor(new SimpleAsyncTaskExecutor("jpa-bootstrap-"));
+    }
+
+    // mvn -Pcds package 的训练运行：启动完成后关闭应用，JVM退出时写出类数据共享归档
+    @Bean
+    @ConditionalOnProperty(name = "webchat.startup.exit-after-start", havingValue = "true")
+    public ApplicationListener<ApplicationReadyEvent> exitAfterStart() {
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
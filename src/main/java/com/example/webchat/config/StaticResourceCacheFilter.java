@@ -0,0 +1,56 @@
+package com.example.webchat.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * 静态资源缓存头：带内容哈希的css/js和带版本号的webjars长期缓存且不再校验，
+ * 其余（页面、未经构建处理的原始路径）每次向服务器校验，避免内容变化后浏览器仍使用旧文件。
+ * 资源不存在等错误响应不缓存，否则回滚后旧哈希地址重新可用时浏览器仍会拿到缓存的404
+ */
+public class StaticResourceCacheFilter extends OncePerRequestFilter {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+    private static final String NO_STORE = "no-store";
+
+    // StaticAssetPipeline 生成的 name-<32位MD5>.ext
+    private static final Pattern FINGERPRINTED = Pattern.compile("-[0-9a-f]{32}\\.[a-z]+$");
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean versioned = path.startsWith("/webjars/") || FINGERPRINTED.matcher(path).find();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, versioned ? IMMUTABLE : REVALIDATE);
+        filterChain.doFilter(request, new HttpServletResponseWrapper(response) {
+            @Override
+            public void sendError(int sc) throws IOException {
+                setHeader(HttpHeaders.CACHE_CONTROL, NO_STORE);
+                super.sendError(sc);
+            }
+
+            @Override
+            public void sendError(int sc, String msg) throws IOException {
+                setHeader(HttpHeaders.CACHE_CONTROL, NO_STORE);
+                super.sendError(sc, msg);
+            }
+
+            @Override
+            public void setStatus(int sc) {
+                if (sc >= 400) {
+                    setHeader(HttpHeaders.CACHE_CONTROL, NO_STORE);
+                }
+                super.setStatus(sc);
+            }
+        });
+    }
+}
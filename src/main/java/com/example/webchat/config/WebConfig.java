@@ -1,23 +1,63 @@
 package com.example.webchat.config;
 
+import com.example.webchat.datasource.DataSourceRoutingInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-import org.webjars.WebJarAssetLocator;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     
+    @Value("${webchat.datasource.routing.enabled:false}")
+    private boolean routingEnabled;
+    
+    // 静态资源缓存头按是否带版本号设置，资源处理器本身不设置（"/" 为欢迎页）
     @Bean
-    public WebJarAssetLocator webJarAssetLocator() {
-        return new WebJarAssetLocator();
+    public FilterRegistrationBean<StaticResourceCacheFilter> staticResourceCacheFilter() {
+        FilterRegistrationBean<StaticResourceCacheFilter> registration = new FilterRegistrationBean<>(new StaticResourceCacheFilter());
+        registration.addUrlPatterns("/", "*.html", "/js/*", "/css/*", "/webjars/*");
+        return registration;
     }
     
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 显式添加WebJars资源处理器
+        // 显式添加WebJars资源处理器。页面引用的都是带版本号的完整路径，
+        // 不需要WebJarAssetLocator在启动时扫描整个类路径来解析版本
         registry.addResourceHandler("/webjars/**")
-                .addResourceLocations("classpath:/META-INF/resources/webjars/");
+                .addResourceLocations("classpath:/META-INF/resources/webjars/")
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+
+        // 构建时生成的 name-<md5>.ext 由VersionResourceResolver校验哈希后映射回原文件，
+        // EncodedResourceResolver按Accept-Encoding优先返回预压缩的.br/.gz
+        registerVersionedResources(registry, "/js/**", "classpath:/static/js/");
+        registerVersionedResources(registry, "/css/**", "classpath:/static/css/");
+
+        registry.addResourceHandler("/*.html")
+                .addResourceLocations("classpath:/static/")
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+    }
+
+    private void registerVersionedResources(ResourceHandlerRegistry registry, String pattern, String location) {
+        registry.addResourceHandler(pattern)
+                .addResourceLocations(location)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 读写分离时按登录用户判断读写一致性窗口，未启用时不注册
+        if (routingEnabled) {
+            registry.addInterceptor(new DataSourceRoutingInterceptor());
+        }
     }
-}
\ No newline at end of file
+}
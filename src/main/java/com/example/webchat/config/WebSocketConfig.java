@@ -1,23 +1,42 @@
 package com.example.webchat.config;
 
+import com.example.webchat.datasource.DataSourceRoutingInterceptor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.server.support.HttpSessionHandshakeInterceptor;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
+    @Value("${webchat.datasource.routing.enabled:false}")
+    private boolean routingEnabled;
+    
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        registry.addEndpoint("/ws").withSockJS();
+        // 握手时把HTTP会话属性（登录用户名）复制到WebSocket会话
+        registry.addEndpoint("/ws")
+                .addInterceptors(new HttpSessionHandshakeInterceptor())
+                .withSockJS();
     }
     
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
-        registry.enableSimpleBroker("/topic");
+        // /queue 用于发给单个会话的消息（/user/queue/...）
+        registry.enableSimpleBroker("/topic", "/queue");
+    }
+    
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // 读写分离时按登录用户判断读写一致性窗口，未启用时不注册
+        if (routingEnabled) {
+            registration.interceptors(new DataSourceRoutingInterceptor());
+        }
     }
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package com.example.webchat.controller;
 
 
+import com.example.webchat.datasource.DataSourceRoutingContext;
 import com.example.webchat.entity.User;
+import com.example.webchat.metrics.ChatMetrics;
 import com.example.webchat.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -25,10 +27,15 @@ public class AuthController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ChatMetrics chatMetrics;
+
     // 注册
     @PostMapping("/register")
     public ResponseEntity<String> register(@RequestBody User user) {
         logger.info("收到注册请求: {}", user.getUsername());
+        // 注册时还没有会话用户，以提交的用户名作为读写一致性的会话标识，使随后的登录能读到新用户
+        DataSourceRoutingContext.setSessionKey(user.getUsername());
         try {
             if (userService.existsByUsername(user.getUsername())) {
                 logger.warn("用户名已存在: {}", user.getUsername());
@@ -52,10 +59,13 @@ public class AuthController {
     @PostMapping("/login")
     public ResponseEntity<String> login(@RequestBody User user, HttpSession session) {
         logger.info("收到登录请求: {}", user.getUsername());
+        DataSourceRoutingContext.setSessionKey(user.getUsername());
         try {
             return userService.findByUsername(user.getUsername())
                     .filter(u -> {
+                        long start = System.nanoTime();
                         boolean matches = passwordEncoder.matches(user.getPasswordHash(), u.getPasswordHash());
+                        chatMetrics.recordBcryptMatch(System.nanoTime() - start);
                         logger.info("密码匹配结果: {}", matches);
                         return matches;
                     })
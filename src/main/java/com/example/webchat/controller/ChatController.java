@@ -1,20 +1,37 @@
 package com.example.webchat.controller;
 
+import com.example.webchat.dto.MessageAck;
+import com.example.webchat.dto.Notification;
+import com.example.webchat.dto.ReplayBatch;
+import com.example.webchat.dto.ResumeRequest;
+import com.example.webchat.dto.StoredFile;
 import com.example.webchat.entity.Message;
 import com.example.webchat.entity.Room;
 import com.example.webchat.entity.RoomMember;
 import com.example.webchat.entity.User;
+import com.example.webchat.metrics.ChatMetrics;
+import com.example.webchat.metrics.SampledLogger;
 import com.example.webchat.repository.MessageRepository;
 import com.example.webchat.repository.RoomMemberRepository;
 import com.example.webchat.repository.RoomRepository;
 import com.example.webchat.repository.UserRepository;
+import com.example.webchat.service.DirectMessageService;
+import com.example.webchat.service.FileStorageService;
+import com.example.webchat.service.MessageReplayService;
+import com.example.webchat.service.PresenceDigestService;
+import com.example.webchat.service.RoomService;
+import com.example.webchat.service.UserDeliveryService;
+import com.example.webchat.websocket.MessageDedupeWindow;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -41,23 +58,120 @@ public class ChatController {
     @Autowired
     private RoomMemberRepository roomMemberRepository;
 
-    // 发送房间消息（持久化并广播到指定房间）
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ChatMetrics chatMetrics;
+
+    @Autowired
+    private MessageReplayService messageReplayService;
+
+    @Autowired
+    private MessageDedupeWindow dedupeWindow;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private UserDeliveryService userDeliveryService;
+
+    @Autowired
+    private DirectMessageService directMessageService;
+
+    @Autowired
+    private PresenceDigestService presenceDigestService;
+
+    @Autowired
+    private RoomService roomService;
+
+    private final SampledLogger log;
+
+    public ChatController(@Value("${webchat.logging.sample-rate:100}") int logSampleRate) {
+        this.log = new SampledLogger(LoggerFactory.getLogger(ChatController.class), logSampleRate);
+    }
+
+    // 发送房间消息（持久化并广播到指定房间），分别统计保存和广播两个阶段的耗时。
+    // 带幂等键的重发不再保存和广播，发送者收到的确认中带有首次发送的消息ID
     @MessageMapping("/chat/{roomId}/sendMessage")
-    @SendTo("/topic/chat/{roomId}/public") // 按房间ID广播
-    public Message sendMessage(@Payload Message message, 
+    @SendToUser(destinations = "/queue/acks", broadcast = false)
+    public MessageAck sendMessage(@Payload Message message, 
                              @DestinationVariable Long roomId,
                              SimpMessageHeaderAccessor headerAccessor) {
+        return publish(message, roomId, headerAccessor, null);
+    }
+
+    // 一对一私信：保存在两人的私有房间中，只投递给收发双方的在线会话（/user/queue/dm），不经过房间主题
+    @MessageMapping("/dm/{recipient}")
+    @SendToUser(destinations = "/queue/acks", broadcast = false)
+    public MessageAck sendDirectMessage(@Payload Message message,
+                                        @DestinationVariable String recipient,
+                                        SimpMessageHeaderAccessor headerAccessor) {
+        String username = (String) headerAccessor.getSessionAttributes().get("username");
+        Long roomId;
+        try {
+            if (username == null || username.isEmpty()) {
+                throw new RuntimeException("User not logged in or session expired");
+            }
+            roomId = directMessageService.resolveRoomId(username, recipient);
+        } catch (RuntimeException e) {
+            sendFailedAck(headerAccessor, message.getClientMessageId(), null, e.getMessage());
+            throw e;
+        }
+        return publish(message, roomId, headerAccessor, recipient);
+    }
+
+    // 发送文件/图片消息：文件已通过 POST /files 上传，这里只保存并广播文件名和地址，文件内容不经过STOMP通道
+    @MessageMapping("/chat/{roomId}/sendFile")
+    @SendToUser(destinations = "/queue/acks", broadcast = false)
+    public MessageAck sendFile(@Payload Message message,
+                               @DestinationVariable Long roomId,
+                               SimpMessageHeaderAccessor headerAccessor) {
+        StoredFile file = fileStorageService.resolve(message.getFileUrl());
+        if (file == null) {
+            RuntimeException e = new RuntimeException("File not found: " + message.getFileUrl());
+            sendFailedAck(headerAccessor, message.getClientMessageId(), roomId, e.getMessage());
+            throw e;
+        }
+        message.setContent(file.getFileName());
+        message.setFileUrl(file.getUrl());
+        message.setMessageType(file.getThumbnailUrl() != null ? "IMAGE" : "FILE");
+        return publish(message, roomId, headerAccessor, null);
+    }
+
+    // recipient 为空时广播到房间主题并通知被提及的用户，否则为私信，只投递给收发双方
+    private MessageAck publish(Message message, Long roomId, SimpMessageHeaderAccessor headerAccessor, String recipient) {
+        String username = (String) headerAccessor.getSessionAttributes().get("username");
+        String clientMessageId = message.getClientMessageId();
+        boolean claimed = false;
         try {
             // 从会话获取当前用户
-            String username = (String) headerAccessor.getSessionAttributes().get("username");
-            System.out.println("Sending message - Username from session: " + username);
-            
             if (username == null || username.isEmpty()) {
                 throw new RuntimeException("User not logged in or session expired");
             }
             
+            // 在查询和保存之前判断是否为重发
+            if (clientMessageId != null) {
+                MessageDedupeWindow.Entry existing = dedupeWindow.claim(username, clientMessageId);
+                if (existing != null) {
+                    // 首次发送尚未完成时不能确认为已发送：它可能失败并释放幂等键，此时需要客户端重发
+                    if (existing.getMessageId() == null) {
+                        log.info("chat.send.pending", "room", roomId, "user", username, "clientMessageId", clientMessageId);
+                        return new MessageAck(clientMessageId, null, roomId, false, true, null);
+                    }
+                    chatMetrics.recordDuplicate();
+                    log.info("chat.send.duplicate", "room", roomId, "user", username, "clientMessageId", clientMessageId);
+                    return new MessageAck(clientMessageId, existing.getMessageId(), roomId, true, false, null);
+                }
+                claimed = true;
+            }
+            
             User user = userRepository.findByUsername(username).orElseThrow(() -> new RuntimeException("User not found: " + username));
             Room room = roomRepository.findById(roomId).orElseThrow(() -> new RuntimeException("Room not found: " + roomId));
+            // 私信由 resolveRoomId 保证收发双方是成员；通过房间地址发往私信房间的消息检查成员身份
+            if (recipient == null) {
+                roomService.checkAccess(room, user);
+            }
 
             // 保存原始消息类型
             String originalMessageType = message.getMessageType();
@@ -68,48 +182,81 @@ public class ChatController {
             message.setSenderName(username);
             
             // 转换前端消息类型到后端数据库类型
-            if (message.getMessageType() != null && message.getMessageType().equals("CHAT")) {
-                message.setMessageType("text"); // 将'CHAT'转换为'text'
-            } else if (message.getMessageType() == null) {
-                message.setMessageType("text"); // 默认设置为文本消息
-            }
+            message.setMessageType(toStorageType(originalMessageType));
             
             // 设置消息创建时间
             message.setCreatedAt(LocalDateTime.now());
             
             // 保存消息到数据库
+            long saveStart = System.nanoTime();
             Message savedMessage = messageRepository.save(message);
+            long broadcastStart = System.nanoTime();
+            chatMetrics.recordDbSave(broadcastStart - saveStart);
+            if (claimed) {
+                dedupeWindow.complete(username, clientMessageId, savedMessage.getId());
+            }
             
             // 返回给前端时恢复原始消息类型（确保前端能正确显示）
-            if (originalMessageType != null) {
-                savedMessage.setMessageType(originalMessageType);
+            savedMessage.setMessageType(toClientType(originalMessageType));
+            
+            if (recipient == null) {
+                // 按房间ID广播；私信不经过房间主题，客户端不对私信房间续传，不进入续传缓冲区
+                messageReplayService.append(savedMessage);
+                messagingTemplate.convertAndSend("/topic/chat/" + roomId + "/public", savedMessage);
+            } else {
+                // 发送者的其他标签页/设备也收到，保持同步
+                userDeliveryService.sendToUser(recipient, "/queue/dm", savedMessage);
+                userDeliveryService.sendToUser(username, "/queue/dm", savedMessage);
+            }
+            chatMetrics.recordBroadcast(System.nanoTime() - broadcastStart);
+            // 私信不按房间打标签，避免每对用户产生一个指标序列
+            if (recipient == null) {
+                chatMetrics.recordMessage(roomId);
             } else {
-                savedMessage.setMessageType("CHAT"); // 默认返回CHAT类型
+                chatMetrics.recordDirectMessage();
             }
+            int mentioned = recipient == null ? userDeliveryService.notifyMentions(savedMessage) : 0;
             
-            return savedMessage;
+            log.info("chat.send", "room", roomId, "user", username, "messageId", savedMessage.getId(),
+                    "recipient", recipient, "mentioned", mentioned);
+            return new MessageAck(clientMessageId, savedMessage.getId(), roomId, false, false, null);
         } catch (Exception e) {
-            System.err.println("Error sending message: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Error sending message: " + e.getMessage());
+            if (claimed) {
+                dedupeWindow.release(username, clientMessageId);
+            }
+            log.warn("chat.send.error", "room", roomId, "error", e.getMessage());
+            RuntimeException error = new RuntimeException("Error sending message: " + e.getMessage());
+            sendFailedAck(headerAccessor, clientMessageId, roomId, error.getMessage());
+            throw error;
         }
     }
 
-    // 加入房间
+    // 带幂等键的发送失败时向发起的会话回复失败确认，客户端据此停止重发并标记该消息；
+    // 错误通知仍由 handleMessageException 发送
+    private void sendFailedAck(SimpMessageHeaderAccessor headerAccessor, String clientMessageId, Long roomId, String error) {
+        if (clientMessageId != null && headerAccessor.getSessionId() != null) {
+            userDeliveryService.sendToSession(headerAccessor.getSessionId(), "/queue/acks",
+                    MessageAck.failed(clientMessageId, roomId, error));
+        }
+    }
+
+    // 加入房间。大房间（在线人数超过阈值）中不保存和广播单条加入消息，计入周期汇总
     @MessageMapping("/chat/{roomId}/addUser")
-    @SendTo("/topic/chat/{roomId}/public")
-    public Message addUser(@Payload Message message, 
+    public void addUser(@Payload Message message, 
                           @DestinationVariable Long roomId,
                           SimpMessageHeaderAccessor headerAccessor) {
         try {
             String username = (String) headerAccessor.getSessionAttributes().get("username");
-            System.out.println("User joining room - Username: " + username + ", RoomId: " + roomId);
             
             User user = userRepository.findByUsername(username).orElseThrow(() -> new RuntimeException("User not found"));
             Room room = roomRepository.findById(roomId).orElseThrow(() -> new RuntimeException("Room not found"));
+            roomService.checkAccess(room, user);
             
-            // 记录用户房间信息
-            headerAccessor.getSessionAttributes().put("roomId", roomId);
+            // 记录用户房间信息，切换房间时视为离开原房间
+            Object previousRoomId = headerAccessor.getSessionAttributes().put("roomId", roomId);
+            if (previousRoomId instanceof Long && !previousRoomId.equals(roomId)) {
+                presenceDigestService.recordLeave((Long) previousRoomId, username);
+            }
             
             // 创建房间成员记录
             RoomMember roomMember = new RoomMember();
@@ -117,6 +264,11 @@ public class ChatController {
             roomMember.setRoomId(roomId);
             roomMember.setRole("member"); // 默认角色
             roomMemberRepository.save(roomMember);
+
+            if (presenceDigestService.recordJoin(roomId, username)) {
+                log.info("chat.join", "room", roomId, "user", username, "digest", true);
+                return;
+            }
             
             // 只使用已有的setter方法
             message.setContent(username + "加入了房间");
@@ -132,21 +284,52 @@ public class ChatController {
             
             // 返回给前端时设置为'JOIN'类型
             savedMessage.setMessageType("JOIN");
+            messageReplayService.append(savedMessage);
+            messagingTemplate.convertAndSend("/topic/chat/" + roomId + "/public", savedMessage);
             
-            System.out.println("User " + username + " successfully joined room " + roomId);
-            return savedMessage;
+            log.info("chat.join", "room", roomId, "user", username);
         } catch (Exception e) {
-            System.err.println("Error adding user to room: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("chat.join.error", "room", roomId, "error", e.getMessage());
             throw new RuntimeException("Error adding user: " + e.getMessage());
         }
     }
 
-    // 获取房间历史消息
+    // 断线重连续传：只补发 lastMessageId 之后缺失的消息，不重新加入房间、不广播加入消息
+    @MessageMapping("/chat/{roomId}/resume")
+    @SendToUser(destinations = "/queue/replay", broadcast = false)
+    public ReplayBatch resume(@Payload ResumeRequest request,
+                              @DestinationVariable Long roomId,
+                              SimpMessageHeaderAccessor headerAccessor) {
+        String username = (String) headerAccessor.getSessionAttributes().get("username");
+        if (username == null || username.isEmpty()) {
+            throw new RuntimeException("User not logged in or session expired");
+        }
+        roomService.checkAccess(roomId, username);
+        headerAccessor.getSessionAttributes().put("roomId", roomId);
+        // 断开连接在大房间中计为离开，续传回来抵消宽限期内的这次离开；小房间不处理
+        presenceDigestService.recordResume(roomId, username);
+
+        ReplayBatch batch = messageReplayService.replay(roomId, request.getLastMessageId());
+        log.info("chat.resume", "room", roomId, "user", username, "lastMessageId", request.getLastMessageId(),
+                "replayed", batch.getMessages().size(), "truncated", batch.isTruncated());
+        return batch;
+    }
+
+    // 心跳：只回复发起的会话，客户端据此判断连接在安静的房间里仍然可用
+    @MessageMapping("/heartbeat")
+    @SendToUser(destinations = "/queue/heartbeat", broadcast = false)
+    public long heartbeat() {
+        return System.currentTimeMillis();
+    }
+
+    // 获取房间历史消息，私信房间只有收发双方可以查看
     @GetMapping("/rooms/{roomId}/messages")
     @ResponseBody
-    public List<Message> getRoomMessages(@PathVariable Long roomId) {
+    public List<Message> getRoomMessages(@PathVariable Long roomId, HttpSession session) {
+        roomService.checkAccess(roomId, session != null ? (String) session.getAttribute("username") : null);
+        long start = System.nanoTime();
         List<Message> messages = messageRepository.findByRoomIdOrderByCreatedAtAsc(roomId);
+        chatMetrics.recordHistoryQuery(System.nanoTime() - start, messages.size());
         // 为每条消息设置发送者名字
         for (Message message : messages) {
             if (message.getSenderId() != null) {
@@ -159,6 +342,29 @@ public class ChatController {
         return messages;
     }
 
+    // 前端消息类型转换为数据库存储类型：'CHAT'或未指定时存为'text'，'IMAGE'/'FILE'存为'image'/'file'
+    public static String toStorageType(String clientType) {
+        if (clientType == null || clientType.equals("CHAT")) {
+            return "text";
+        }
+        if (clientType.equals("IMAGE") || clientType.equals("FILE")) {
+            return clientType.toLowerCase();
+        }
+        return clientType;
+    }
+
+    // 返回给前端的消息类型：未指定时默认为'CHAT'
+    public static String toClientType(String originalType) {
+        return originalType != null ? originalType : "CHAT";
+    }
+
+    // STOMP消息处理出错时只通知发起的会话，不再抛给消息通道
+    @MessageExceptionHandler
+    @SendToUser(destinations = "/queue/notifications", broadcast = false)
+    public Notification handleMessageException(Exception e) {
+        return Notification.error(e.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException e) {
         return ResponseEntity.badRequest().body(e.getMessage());
@@ -0,0 +1,189 @@
+package com.example.webchat.controller;
+
+import com.example.webchat.dto.StoredFile;
+import com.example.webchat.service.FileStorageService;
+import com.example.webchat.service.impl.FileStorageServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 文件上传和下载。上传的请求体直接流式写入存储；下载优先使用Tomcat的sendfile（内核零拷贝），
+ * 不支持时用 FileChannel.transferTo，支持单区间Range请求和基于内容哈希的ETag
+ */
+@RestController
+@RequestMapping("/files")
+public class FileController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // 内容寻址，同一地址的内容永远不变
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    // 上传文件：请求体为文件原始内容（不使用multipart），文件名通过name参数传递
+    @PostMapping
+    public ResponseEntity<StoredFile> upload(@RequestParam("name") String name,
+                                             HttpServletRequest request,
+                                             HttpSession session) throws IOException {
+        requireLogin(session);
+        return ResponseEntity.ok(fileStorageService.store(request.getInputStream(), name));
+    }
+
+    @GetMapping("/{hash:[0-9a-f]{64}}/{name}")
+    public void download(@PathVariable String hash,
+                         @PathVariable String name,
+                         HttpServletRequest request,
+                         HttpServletResponse response,
+                         HttpSession session) throws IOException {
+        requireLogin(session);
+        Path file = fileStorageService.getFile(hash);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        MediaType contentType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        // 只有图片内联显示，其余一律作为附件下载，避免上传的html等在本站域名下执行
+        boolean inline = FileStorageServiceImpl.isImage(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, (inline ? ContentDisposition.inline() : ContentDisposition.attachment())
+                .filename(name, StandardCharsets.UTF_8).build().toString());
+        serve(file, inline ? contentType : MediaType.APPLICATION_OCTET_STREAM, "\"" + hash + "\"", request, response);
+    }
+
+    @GetMapping("/thumbnails/{hash:[0-9a-f]{64}}.jpg")
+    public void thumbnail(@PathVariable String hash,
+                          HttpServletRequest request,
+                          HttpServletResponse response,
+                          HttpSession session) throws IOException {
+        requireLogin(session);
+        Path thumbnail = fileStorageService.getThumbnail(hash);
+        if (!Files.isRegularFile(thumbnail)) {
+            // 尚未生成或无法生成，不缓存404
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        serve(thumbnail, MediaType.IMAGE_JPEG, "\"" + hash + "-thumb\"", request, response);
+    }
+
+    private void serve(Path file, MediaType contentType, String etag,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        long length = Files.size(file);
+        long start = 0;
+        long end = length - 1;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType.toString());
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range 与当前ETag不一致时忽略Range，返回完整内容；多区间请求同样返回完整内容
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = null;
+            }
+            if (ranges != null && ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    ranges = null;
+                }
+                if (ranges == null || start > end) {
+                    rangeNotSatisfiable(response, length);
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            } else if (ranges == null) {
+                rangeNotSatisfiable(response, length);
+                return;
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由Tomcat在响应结束后直接把文件区间写入socket
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, out);
+            }
+        }
+    }
+
+    private void rangeNotSatisfiable(HttpServletResponse response, long length) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+    }
+
+    private void requireLogin(HttpSession session) {
+        String username = (String) session.getAttribute("username");
+        if (username == null || username.isEmpty()) {
+            throw new RuntimeException("User not logged in or session expired");
+        }
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<String> handleMaxUploadSize(MaxUploadSizeExceededException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("文件超过大小限制: " + e.getMaxUploadSize() + " bytes");
+    }
+
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<String> handleRuntimeException(RuntimeException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
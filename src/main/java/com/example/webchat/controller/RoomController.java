@@ -1,6 +1,8 @@
 package com.example.webchat.controller;
 
+import com.example.webchat.dto.RetentionPolicy;
 import com.example.webchat.entity.Room;
+import com.example.webchat.service.DirectMessageService;
 import com.example.webchat.service.RoomService;
 import com.example.webchat.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,6 +31,10 @@ public class RoomController {
             if (room.getName() == null || room.getName().trim().isEmpty()) {
                 throw new RuntimeException("房间名称不能为空");
             }
+            // 私信房间按名称查找，普通房间不能占用其名称前缀
+            if (room.getName().startsWith(DirectMessageService.ROOM_NAME_PREFIX)) {
+                throw new RuntimeException("房间名称不能以 " + DirectMessageService.ROOM_NAME_PREFIX + " 开头");
+            }
             
             // 设置房间创建者
             String username = (String) session.getAttribute("username");
@@ -61,6 +67,18 @@ public class RoomController {
         }
     }
 
+    // 设置房间消息保留策略，超出的消息由后台任务分批清理；字段为空表示不限制
+    @PutMapping("/{roomId}/retention")
+    public ResponseEntity<RetentionPolicy> updateRetention(@PathVariable Long roomId,
+                                                           @RequestBody RetentionPolicy policy,
+                                                           HttpSession session) {
+        String username = (String) session.getAttribute("username");
+        if (username == null) {
+            throw new RuntimeException("User not logged in or session expired");
+        }
+        return ResponseEntity.ok(roomService.updateRetention(roomId, policy, username));
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException e) {
         return ResponseEntity.badRequest().body(e.getMessage());
@@ -0,0 +1,25 @@
+package com.example.webchat.datasource;
+
+/**
+ * 当前线程处理的请求所属的会话标识（已登录时为用户名），用于读写一致性判断。
+ * 由HTTP拦截器和STOMP入站通道拦截器在处理前设置、处理后清除
+ */
+public final class DataSourceRoutingContext {
+
+    private static final ThreadLocal<String> SESSION_KEY = new ThreadLocal<>();
+
+    private DataSourceRoutingContext() {
+    }
+
+    public static void setSessionKey(String sessionKey) {
+        SESSION_KEY.set(sessionKey);
+    }
+
+    public static String getSessionKey() {
+        return SESSION_KEY.get();
+    }
+
+    public static void clear() {
+        SESSION_KEY.remove();
+    }
+}
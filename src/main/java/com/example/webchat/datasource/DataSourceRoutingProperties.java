@@ -0,0 +1,37 @@
+package com.example.webchat.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离配置（webchat.datasource.routing.*），主库沿用 spring.datasource.* 配置
+ */
+@Data
+@ConfigurationProperties(prefix = "webchat.datasource.routing")
+public class DataSourceRoutingProperties {
+
+    // 是否启用读写分离，关闭时只使用主库
+    private boolean enabled = false;
+
+    // 用户写入后在该时间内的只读查询仍走主库，保证能读到自己刚写入的数据
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    // 从库获取连接的超时时间，从库故障时尽快回退到主库
+    private Duration replicaConnectionTimeout = Duration.ofSeconds(2);
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Data
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        private int maximumPoolSize = 10;
+    }
+}
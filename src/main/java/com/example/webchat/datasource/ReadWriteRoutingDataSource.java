@@ -0,0 +1,101 @@
+package com.example.webchat.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读写分离数据源：只读事务（@Transactional(readOnly = true)）的连接从健康的从库获取，
+ * 其余连接以及处于读写一致性窗口内的会话的查询都走主库。
+ * 需要包在 LazyConnectionDataSourceProxy 中使用，使获取连接推迟到事务的只读标记设置之后
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements MeterBinder {
+
+    private final DataSource primary;
+    private final ReplicaPool replicaPool;
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private final LongAdder primaryRoutes = new LongAdder();
+    private final LongAdder replicaRoutes = new LongAdder();
+    private final LongAdder fallbackRoutes = new LongAdder();
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaPool replicaPool,
+                                      ReadYourWritesTracker readYourWritesTracker) {
+        this.primary = primary;
+        this.replicaPool = replicaPool;
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindRouteCounter(registry, "primary", primaryRoutes);
+        bindRouteCounter(registry, "replica", replicaRoutes);
+        bindRouteCounter(registry, "fallback", fallbackRoutes);
+        Gauge.builder("datasource.replicas.healthy", replicaPool, ReplicaPool::getHealthyCount)
+                .description("当前可用的从库数量")
+                .register(registry);
+    }
+
+    private static void bindRouteCounter(MeterRegistry registry, String target, LongAdder routes) {
+        FunctionCounter.builder("datasource.route", routes, LongAdder::sum)
+                .description("数据库连接路由次数（fallback表示只读查询因从库不可用回退到主库）")
+                .tag("target", target)
+                .register(registry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        String sessionKey = DataSourceRoutingContext.getSessionKey();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            trackWrite(sessionKey);
+            primaryRoutes.increment();
+            return primary.getConnection();
+        }
+        if (readYourWritesTracker.isWithinWindow(sessionKey)) {
+            primaryRoutes.increment();
+            return primary.getConnection();
+        }
+
+        ReplicaPool.Replica replica = replicaPool.select();
+        if (replica != null) {
+            try {
+                Connection connection = replica.getDataSource().getConnection();
+                replicaRoutes.increment();
+                return connection;
+            } catch (SQLException e) {
+                replicaPool.markDown(replica, e);
+            }
+        }
+        fallbackRoutes.increment();
+        return primary.getConnection();
+    }
+
+    // 显式指定账号的连接不参与路由，直接从主库获取
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        primaryRoutes.increment();
+        return primary.getConnection(username, password);
+    }
+
+    // 写事务提交后记录该会话的写入时间，开启读写一致性窗口
+    private void trackWrite(String sessionKey) {
+        if (sessionKey == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                readYourWritesTracker.recordWrite(sessionKey);
+            }
+        });
+    }
+}
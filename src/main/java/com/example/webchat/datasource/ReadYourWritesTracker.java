@@ -0,0 +1,42 @@
+package com.example.webchat.datasource;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录每个会话最近一次写事务提交的时间。窗口期内该会话的只读查询路由到主库，
+ * 避免从库复制延迟导致用户看不到自己刚发送的消息
+ */
+public class ReadYourWritesTracker {
+
+    private final long windowNanos;
+    private final Map<String, Long> lastWriteNanos = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    public void recordWrite(String sessionKey) {
+        if (sessionKey != null && windowNanos > 0) {
+            lastWriteNanos.put(sessionKey, System.nanoTime());
+        }
+    }
+
+    public boolean isWithinWindow(String sessionKey) {
+        if (sessionKey == null) {
+            return false;
+        }
+        Long writtenAt = lastWriteNanos.get(sessionKey);
+        return writtenAt != null && System.nanoTime() - writtenAt < windowNanos;
+    }
+
+    // 定期清理已过窗口期的记录
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        lastWriteNanos.values().removeIf(writtenAt -> now - writtenAt >= windowNanos);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.webchat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 发送确认：客户端幂等键对应的消息ID。duplicate 为 true 表示这是一次重发，消息没有再次保存和广播。
+ * pending 为 true 表示首次发送仍在处理中（messageId 为空），结果未定，客户端需稍后用同一幂等键重发。
+ * error 非空表示发送失败，客户端不再重发并将该消息标记为失败
+ */
+@Data
+@AllArgsConstructor
+public class MessageAck {
+    private String clientMessageId;
+    private Long messageId;
+    private Long roomId;
+    private boolean duplicate;
+    private boolean pending;
+    private String error;
+
+    public static MessageAck failed(String clientMessageId, Long roomId, String error) {
+        return new MessageAck(clientMessageId, null, roomId, false, false, error);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.webchat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发给单个用户的通知（/user/queue/notifications）：被提及、处理消息出错等。
+ * severity 为 info/warning/error，客户端据此选择提示样式
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Notification {
+    private String type;
+    private String severity;
+    private String content;
+    private Long roomId;
+    private Long messageId;
+    private String senderName;
+    private LocalDateTime createdAt;
+
+    public static Notification mention(Long roomId, Long messageId, String senderName, String content) {
+        return new Notification("MENTION", "info", content, roomId, messageId, senderName, LocalDateTime.now());
+    }
+
+    public static Notification error(String content) {
+        return new Notification("ERROR", "error", content, null, null, null, LocalDateTime.now());
+    }
+}
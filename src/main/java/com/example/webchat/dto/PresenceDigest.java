@@ -0,0 +1,23 @@
+package com.example.webchat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 大房间的加入/离开汇总帧，发送到房间主题，不保存到数据库。
+ * messageType 固定为 PRESENCE，usernames 为本周期内加入的部分用户名（最多几个，供显示）
+ */
+@Data
+@AllArgsConstructor
+public class PresenceDigest {
+    private final String messageType = "PRESENCE";
+    private Long roomId;
+    private int joined;
+    private int left;
+    private List<String> usernames;
+    private int online;
+    private LocalDateTime createdAt;
+}
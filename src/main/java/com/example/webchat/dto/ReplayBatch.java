@@ -0,0 +1,19 @@
+package com.example.webchat.dto;
+
+import com.example.webchat.entity.Message;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 续传结果：lastMessageId 之后缺失的消息（按ID升序）。
+ * truncated 为 true 时缺口过大，messages 为空，客户端应重新加载完整历史
+ */
+@Data
+@AllArgsConstructor
+public class ReplayBatch {
+    private Long roomId;
+    private List<Message> messages;
+    private boolean truncated;
+}
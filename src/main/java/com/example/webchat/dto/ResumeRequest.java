@@ -0,0 +1,11 @@
+package com.example.webchat.dto;
+
+import lombok.Data;
+
+/**
+ * 断线重连后的续传请求：客户端收到的最后一条消息ID
+ */
+@Data
+public class ResumeRequest {
+    private Long lastMessageId;
+}
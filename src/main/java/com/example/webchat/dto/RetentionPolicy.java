@@ -0,0 +1,18 @@
+package com.example.webchat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 房间消息保留策略：maxAgeDays 为最长保留天数，maxMessages 为最多保留条数，为空表示不限制；
+ * 两者都设置时超出任一条件的消息都会被清理
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionPolicy {
+    private Long roomId;
+    private Integer maxAgeDays;
+    private Integer maxMessages;
+}
@@ -0,0 +1,19 @@
+package com.example.webchat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 已存储的文件：按内容SHA-256寻址，相同内容只保存一份
+ */
+@Data
+@AllArgsConstructor
+public class StoredFile {
+    private String hash;
+    private String fileName;
+    private long size;
+    private String contentType;
+    private String url;
+    // 非图片为null；缩略图异步生成，尚未生成时客户端回退显示原图
+    private String thumbnailUrl;
+}
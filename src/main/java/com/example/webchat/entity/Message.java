@@ -1,5 +1,6 @@
 package com.example.webchat.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -34,11 +35,18 @@ public class Message {
     @Transient
     private String senderName;
     
+    // 客户端生成的幂等键（非持久化字段），重发同一条消息时保持不变
+    @Transient
+    private String clientMessageId;
+    
     // 外键关系映射
+    // 关联对象不序列化：从数据库查出的消息中是延迟加载代理，会话关闭后无法序列化（发送者名字见 senderName）
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "room_id", insertable = false, updatable = false)
     private Room room;
     
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "sender_id", insertable = false, updatable = false)
     private User sender;
@@ -1,5 +1,6 @@
 package com.example.webchat.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -26,8 +27,17 @@ public class Room {
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
+
+    // 消息保留策略：最长保留天数、最多保留条数，为空表示不限制
+    @Column(name = "retention_days")
+    private Integer retentionDays;
+
+    @Column(name = "retention_max_messages")
+    private Integer retentionMaxMessages;
     
     // 外键关系映射
+    // 创建者不序列化：查询出的房间中是延迟加载代理，无法序列化，房间列表会被截断（创建者ID见 createdBy）
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by", insertable = false, updatable = false)
     private User creator;
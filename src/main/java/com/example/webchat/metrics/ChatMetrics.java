@@ -0,0 +1,243 @@
+package com.example.webchat.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 聊天热路径及各功能模块的指标，名称均以 chat. 开头。
+ * 计时器在启动时创建好，热路径上只做一次记录，不再按名称查找
+ */
+@Component
+public class ChatMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Timer sendDbSaveTimer;
+    private final Timer sendBroadcastTimer;
+    private final Timer historyQueryTimer;
+    private final DistributionSummary historyRows;
+    private final Timer bcryptEncodeTimer;
+    private final Timer bcryptMatchTimer;
+    private final Counter duplicateCounter;
+    private final Counter directMessageCounter;
+    private final Timer uploadTimer;
+    private final DistributionSummary uploadBytes;
+    private final Counter uploadDeduplicated;
+    private final Timer thumbnailTimer;
+    private final Counter presenceDigestCounter;
+    private final Counter retentionPurgedCounter;
+    private final Timer retentionChunkTimer;
+    private final Counter retentionBackoffCounter;
+    private final AtomicInteger retentionRoomsRemaining = new AtomicInteger();
+
+    // 最近的保存耗时（指数加权平均，近似值：并发更新时丢失个别样本不影响判断），供后台清理任务判断是否退避；
+    // 没有新样本时每经过一个半衰期减半，空闲时不会一直停留在最后一次高峰的值上
+    private static final long RECENT_DB_SAVE_HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private volatile long recentDbSaveNanos;
+    private volatile long recentDbSaveAtNanos = System.nanoTime();
+
+    private final Map<String, DistributionSummary> replaySummaries = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> userDeliverySummaries = new ConcurrentHashMap<>();
+    private final Map<String, Counter> presenceCoalescedCounters = new ConcurrentHashMap<>();
+
+    // 每个房间一个计数器，/actuator/metrics 中可按 room 标签查看，Prometheus 用 rate() 得到每秒消息数；
+    // 带房间标签的计数器数量有上限，超出后的房间合并计入 room=other，避免指标序列随房间数无限增长
+    private final Map<Long, Counter> roomMessageCounters = new ConcurrentHashMap<>();
+    private final int maxRoomTags;
+    private final Counter otherRoomsMessageCounter;
+
+    public ChatMetrics(MeterRegistry registry, @Value("${webchat.metrics.max-room-tags:100}") int maxRoomTags) {
+        this.registry = registry;
+        this.maxRoomTags = maxRoomTags;
+        this.otherRoomsMessageCounter = roomMessageCounter("other");
+        this.sendDbSaveTimer = sendTimer("db-save");
+        this.sendBroadcastTimer = sendTimer("broadcast");
+        this.historyQueryTimer = Timer.builder("chat.history.query")
+                .description("房间历史消息查询耗时")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.historyRows = DistributionSummary.builder("chat.history.rows")
+                .description("单次历史消息查询返回的行数")
+                .baseUnit("rows")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.bcryptEncodeTimer = bcryptTimer("encode");
+        this.bcryptMatchTimer = bcryptTimer("matches");
+        this.directMessageCounter = Counter.builder("chat.direct.messages")
+                .description("私信消息数（不按房间打标签）")
+                .register(registry);
+        this.duplicateCounter = Counter.builder("chat.send.duplicates")
+                .description("按幂等键识别出的重发消息数（未再次保存和广播）")
+                .register(registry);
+        this.uploadTimer = Timer.builder("chat.files.upload")
+                .description("文件上传（流式写入并计算哈希）耗时")
+                .register(registry);
+        this.uploadBytes = DistributionSummary.builder("chat.files.upload.size")
+                .description("上传文件大小")
+                .baseUnit("bytes")
+                .register(registry);
+        this.uploadDeduplicated = Counter.builder("chat.files.deduplicated")
+                .description("内容已存在、未重复保存的上传数")
+                .register(registry);
+        this.thumbnailTimer = Timer.builder("chat.files.thumbnail")
+                .description("缩略图生成耗时")
+                .register(registry);
+        this.presenceDigestCounter = Counter.builder("chat.presence.digests")
+                .description("大房间发送的加入/离开汇总帧数")
+                .register(registry);
+        this.retentionPurgedCounter = Counter.builder("chat.retention.purged")
+                .description("按保留策略删除的消息数")
+                .baseUnit("messages")
+                .register(registry);
+        this.retentionChunkTimer = Timer.builder("chat.retention.chunk")
+                .description("保留策略单批删除耗时")
+                .register(registry);
+        this.retentionBackoffCounter = Counter.builder("chat.retention.backoff")
+                .description("因消息保存耗时升高而延长批次间隔的次数")
+                .register(registry);
+        Gauge.builder("chat.retention.rooms.remaining", retentionRoomsRemaining, AtomicInteger::get)
+                .description("本轮清理尚未处理的房间数")
+                .register(registry);
+    }
+
+    private Timer sendTimer(String phase) {
+        return Timer.builder("chat.send")
+                .description("sendMessage 处理耗时（按阶段）")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Timer bcryptTimer(String operation) {
+        return Timer.builder("auth.bcrypt")
+                .description("BCrypt 加密/校验耗时")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    private Counter roomMessageCounter(String room) {
+        return Counter.builder("chat.messages")
+                .description("房间消息数")
+                .tag("room", room)
+                .register(registry);
+    }
+
+    public void recordMessage(Long roomId) {
+        Counter counter = roomMessageCounters.get(roomId);
+        if (counter == null) {
+            // 并发时可能略微超过上限，只需保证数量有界
+            counter = roomMessageCounters.size() < maxRoomTags
+                    ? roomMessageCounters.computeIfAbsent(roomId, id -> roomMessageCounter(String.valueOf(id)))
+                    : otherRoomsMessageCounter;
+        }
+        counter.increment();
+    }
+
+    public void recordDirectMessage() {
+        directMessageCounter.increment();
+    }
+
+    public void recordDbSave(long nanos) {
+        sendDbSaveTimer.record(nanos, TimeUnit.NANOSECONDS);
+        long now = System.nanoTime();
+        long recent = decayedDbSaveNanos(now);
+        recentDbSaveNanos = recent + (nanos - recent) / 16;
+        recentDbSaveAtNanos = now;
+    }
+
+    public long getRecentDbSaveNanos() {
+        return decayedDbSaveNanos(System.nanoTime());
+    }
+
+    private long decayedDbSaveNanos(long now) {
+        long halvings = (now - recentDbSaveAtNanos) / RECENT_DB_SAVE_HALF_LIFE_NANOS;
+        return halvings >= Long.SIZE - 1 ? 0 : recentDbSaveNanos >> Math.max(halvings, 0);
+    }
+
+    public void recordBroadcast(long nanos) {
+        sendBroadcastTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDuplicate() {
+        duplicateCounter.increment();
+    }
+
+    public void recordHistoryQuery(long nanos, int rows) {
+        historyQueryTimer.record(nanos, TimeUnit.NANOSECONDS);
+        historyRows.record(rows);
+    }
+
+    // source: buffer（内存缓冲区）、database（键集查询）、truncated（缺口过大，客户端重新加载历史）
+    public void recordReplay(String source, int messages) {
+        replaySummaries.computeIfAbsent(source, s -> DistributionSummary.builder("chat.replay.messages")
+                .description("断线重连续传补发的消息数")
+                .tag("source", s)
+                .register(registry))
+                .record(messages);
+    }
+
+    // 每次定向投递命中的会话数：count为投递次数，sum为实际发送数，值为0表示用户不在线
+    public void recordUserDelivery(String destination, int sessions) {
+        userDeliverySummaries.computeIfAbsent(destination, d -> DistributionSummary.builder("chat.user.delivery.sessions")
+                .description("按用户定向投递时命中的在线会话数")
+                .tag("destination", d)
+                .register(registry))
+                .record(sessions);
+    }
+
+    // 大房间中计入汇总、没有单独保存和广播的加入/离开事件
+    public void recordPresenceCoalesced(String event) {
+        presenceCoalescedCounters.computeIfAbsent(event, e -> Counter.builder("chat.presence.coalesced")
+                .description("计入汇总的加入/离开事件数")
+                .tag("event", e)
+                .register(registry))
+                .increment();
+    }
+
+    public void recordPresenceDigest() {
+        presenceDigestCounter.increment();
+    }
+
+    public void recordRetentionChunk(int deleted, long nanos) {
+        retentionPurgedCounter.increment(deleted);
+        retentionChunkTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRetentionBackoff() {
+        retentionBackoffCounter.increment();
+    }
+
+    public void setRetentionRoomsRemaining(int rooms) {
+        retentionRoomsRemaining.set(rooms);
+    }
+
+    public void recordUpload(long bytes, long nanos, boolean deduplicated) {
+        uploadTimer.record(nanos, TimeUnit.NANOSECONDS);
+        uploadBytes.record(bytes);
+        if (deduplicated) {
+            uploadDeduplicated.increment();
+        }
+    }
+
+    public void recordThumbnail(long nanos) {
+        thumbnailTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBcryptEncode(long nanos) {
+        bcryptEncodeTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBcryptMatch(long nanos) {
+        bcryptMatchTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.webchat.metrics;
+
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按事件采样的结构化日志，输出形如 event=chat.send room=3 user=alice sampled=1/100。
+ * 每个事件名每 sampleRate 次只输出一次；未命中采样时只做一次计数，不拼接字符串
+ */
+public class SampledLogger {
+
+    private final Logger logger;
+    private final int sampleRate;
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public SampledLogger(Logger logger, int sampleRate) {
+        this.logger = logger;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    // keyValues 按 key1, value1, key2, value2... 顺序传入
+    public void info(String event, Object... keyValues) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        long count = counters.computeIfAbsent(event, e -> new AtomicLong()).getAndIncrement();
+        if (count % sampleRate != 0) {
+            return;
+        }
+        logger.info(format(event, keyValues, sampleRate > 1));
+    }
+
+    // 警告不采样，异常情况每次都输出
+    public void warn(String event, Object... keyValues) {
+        if (logger.isWarnEnabled()) {
+            logger.warn(format(event, keyValues, false));
+        }
+    }
+
+    private String format(String event, Object[] keyValues, boolean sampled) {
+        StringBuilder line = new StringBuilder(64).append("event=").append(event);
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            line.append(' ').append(keyValues[i]).append('=').append(keyValues[i + 1]);
+        }
+        if (sampled) {
+            line.append(" sampled=1/").append(sampleRate);
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.webchat.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 从JVM启动到接受第一个STOMP连接的时间，与Boot自带的 application.started.time / application.ready.time 一起
+ * 衡量重启和滚动发布时实例多久能真正接入客户端
+ */
+@Component
+public class StartupMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupMetrics.class);
+
+    private final AtomicLong firstConnectionMillis = new AtomicLong(-1);
+
+    public StartupMetrics(MeterRegistry registry) {
+        TimeGauge.builder("application.first.websocket.connection.time", firstConnectionMillis, TimeUnit.MILLISECONDS,
+                        millis -> millis.get() < 0 ? Double.NaN : millis.get())
+                .description("JVM启动到接受第一个WebSocket连接的时间")
+                .register(registry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        if (firstConnectionMillis.get() >= 0) {
+            return;
+        }
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (firstConnectionMillis.compareAndSet(-1, uptime)) {
+            log.info("event=startup.first-websocket-connection uptimeMs={}", uptime);
+        }
+    }
+}
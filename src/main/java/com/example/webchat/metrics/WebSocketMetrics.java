@@ -0,0 +1,58 @@
+package com.example.webchat.metrics;
+
+import com.example.webchat.service.PresenceDigestService;
+import com.example.webchat.websocket.MessageDedupeWindow;
+import com.example.webchat.websocket.StompSessionRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * WebSocket相关的瞬时值指标：活跃STOMP会话数、订阅数、去重窗口大小、大房间数，
+ * 以及入站/出站消息通道线程池的排队任务数和活跃线程数（排队持续增长说明处理跟不上）
+ */
+@Component
+public class WebSocketMetrics {
+
+    public WebSocketMetrics(MeterRegistry registry,
+                            StompSessionRegistry sessionRegistry,
+                            MessageDedupeWindow dedupeWindow,
+                            PresenceDigestService presenceDigestService,
+                            @Qualifier("clientInboundChannelExecutor") TaskExecutor inboundExecutor,
+                            @Qualifier("clientOutboundChannelExecutor") TaskExecutor outboundExecutor) {
+        Gauge.builder("websocket.sessions.active", sessionRegistry, StompSessionRegistry::getSessionCount)
+                .description("活跃STOMP会话数")
+                .register(registry);
+        Gauge.builder("websocket.subscriptions.active", sessionRegistry, StompSessionRegistry::getSubscriptionCount)
+                .description("活跃STOMP订阅数")
+                .register(registry);
+        Gauge.builder("chat.dedupe.entries", dedupeWindow, MessageDedupeWindow::size)
+                .description("去重窗口中的幂等键数量")
+                .register(registry);
+        Gauge.builder("chat.presence.large.rooms", presenceDigestService, PresenceDigestService::getLargeRoomCount)
+                .description("处于大房间模式（加入/离开按周期汇总）的房间数")
+                .register(registry);
+        registerChannelGauges(registry, "inbound", inboundExecutor);
+        registerChannelGauges(registry, "outbound", outboundExecutor);
+    }
+
+    // 按声明类型TaskExecutor注入：延迟初始化时执行器尚未创建，无法按实际类型匹配
+    private void registerChannelGauges(MeterRegistry registry, String channel, TaskExecutor taskExecutor) {
+        if (!(taskExecutor instanceof ThreadPoolTaskExecutor)) {
+            return;
+        }
+        ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) taskExecutor;
+        Gauge.builder("websocket.channel.queue.size", executor,
+                        e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("消息通道线程池排队任务数")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("websocket.channel.active.threads", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("消息通道线程池活跃线程数")
+                .tag("channel", channel)
+                .register(registry);
+    }
+}
@@ -1,12 +1,41 @@
 package com.example.webchat.repository;
 
 import com.example.webchat.entity.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
+    @Transactional(readOnly = true)
     List<Message> findByRoomIdOrderByCreatedAtAsc(Long roomId);
+
+    // 断线续传：按ID键集查询某条消息之后的消息
+    List<Message> findByRoomIdAndIdGreaterThanOrderByIdAsc(Long roomId, Long id, Pageable pageable);
+
+    // 断线续传的回看窗口：某条消息之前、创建时间不早于 cutoff 的消息
+    List<Message> findByRoomIdAndIdLessThanAndCreatedAtGreaterThanEqualOrderByIdAsc(Long roomId, Long id, LocalDateTime cutoff);
+
+    // 以下为消息保留策略的清理查询，均走主库。删除范围是房间内某个ID及之前的全部消息（ID前缀），
+    // 按 (room_id, id) 索引键集分批删除，每批一个短事务
+    @Query("SELECT MAX(m.id) FROM Message m WHERE m.roomId = :roomId AND m.createdAt < :cutoff")
+    Long findMaxIdCreatedBefore(@Param("roomId") Long roomId, @Param("cutoff") LocalDateTime cutoff);
+
+    @Query("SELECT m.id FROM Message m WHERE m.roomId = :roomId ORDER BY m.id DESC")
+    List<Long> findIdsNewestFirst(@Param("roomId") Long roomId, Pageable pageable);
+
+    @Query("SELECT m.id FROM Message m WHERE m.roomId = :roomId AND m.id <= :maxId ORDER BY m.id ASC")
+    List<Long> findIdsUpTo(@Param("roomId") Long roomId, @Param("maxId") Long maxId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Message m WHERE m.roomId = :roomId AND m.id <= :maxId")
+    int deleteUpTo(@Param("roomId") Long roomId, @Param("maxId") Long maxId);
 }
\ No newline at end of file
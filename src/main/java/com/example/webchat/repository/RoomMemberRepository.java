@@ -2,8 +2,19 @@ package com.example.webchat.repository;
 
 import com.example.webchat.entity.RoomMember;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface RoomMemberRepository extends JpaRepository<RoomMember, Long> {
-}
\ No newline at end of file
+    // 私信房间的访问检查。刚加入房间后立即访问，走主库
+    boolean existsByRoomIdAndUserId(Long roomId, Long userId);
+
+    // 从给定用户名中筛出该房间的成员，提及通知只发给房间成员
+    @Query("select u.username from RoomMember m, User u where u.id = m.userId and m.roomId = :roomId and u.username in :usernames")
+    List<String> findMemberUsernames(@Param("roomId") Long roomId, @Param("usernames") Collection<String> usernames);
+}
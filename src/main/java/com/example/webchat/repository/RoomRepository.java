@@ -3,10 +3,26 @@ package com.example.webchat.repository;
 import com.example.webchat.entity.Room;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface RoomRepository extends JpaRepository<Room, Long> {
+    @Transactional(readOnly = true)
     List<Room> findByIsPrivate(Boolean isPrivate);
+
+    // 房间列表不包含私信房间（按名称前缀排除）
+    @Transactional(readOnly = true)
+    List<Room> findByNameNotLike(String namePattern);
+
+    @Transactional(readOnly = true)
+    List<Room> findByIsPrivateAndNameNotLike(Boolean isPrivate, String namePattern);
+
+    // 私信房间在首次私信时创建，查找走主库，避免刚创建的房间在从库上查不到而重复创建
+    Optional<Room> findFirstByNameAndIsPrivateOrderByIdAsc(String name, Boolean isPrivate);
+
+    // 设置了保留策略的房间，由后台清理任务定期处理
+    List<Room> findByRetentionDaysIsNotNullOrRetentionMaxMessagesIsNotNull();
 }
\ No newline at end of file
@@ -3,13 +3,21 @@ package com.example.webchat.repository;
 import com.example.webchat.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    @Transactional(readOnly = true)
     Optional<User> findByUsername(String username);
+
+    @Transactional(readOnly = true)
     Boolean existsByUsername(String username);
+
+    @Transactional(readOnly = true)
     Optional<User> findByEmail(String email);
+
+    @Transactional(readOnly = true)
     Boolean existsByEmail(String email);
 }
\ No newline at end of file
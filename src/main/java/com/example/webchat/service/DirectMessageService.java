@@ -0,0 +1,12 @@
+package com.example.webchat.service;
+
+/**
+ * 一对一私信：每对用户共用一个私有房间，私信消息照常保存在该房间中
+ */
+public interface DirectMessageService {
+    // 私信房间名前缀（dm:<较小用户ID>:<较大用户ID>），普通房间不能使用，房间列表中不显示
+    String ROOM_NAME_PREFIX = "dm:";
+
+    // 返回两人之间的私有房间ID，不存在时创建房间并加入两人
+    Long resolveRoomId(String sender, String recipient);
+}
@@ -0,0 +1,14 @@
+package com.example.webchat.service;
+
+import com.example.webchat.dto.StoredFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+public interface FileStorageService {
+    StoredFile store(InputStream in, String fileName) throws IOException;
+    StoredFile resolve(String fileUrl);
+    Path getFile(String hash);
+    Path getThumbnail(String hash);
+}
@@ -0,0 +1,11 @@
+package com.example.webchat.service;
+
+import com.example.webchat.dto.ReplayBatch;
+import com.example.webchat.entity.Message;
+
+public interface MessageReplayService {
+    void append(Message message);
+    ReplayBatch replay(Long roomId, Long lastMessageId);
+    // 数据库中已删除房间内 maxId 及之前的消息时，同步移出缓冲区
+    void evict(Long roomId, Long maxId);
+}
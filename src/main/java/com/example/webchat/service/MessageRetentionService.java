@@ -0,0 +1,8 @@
+package com.example.webchat.service;
+
+/**
+ * 按房间保留策略清理过期消息，在后台分批执行
+ */
+public interface MessageRetentionService {
+    void purgeExpiredMessages();
+}
@@ -0,0 +1,15 @@
+package com.example.webchat.service;
+
+/**
+ * 房间加入/离开事件：在线人数超过阈值的大房间不再逐条保存和广播，按周期汇总为一帧
+ */
+public interface PresenceDigestService {
+    boolean isLargeRoom(Long roomId);
+    // 大房间中记录一次加入/离开，返回是否已计入汇总（小房间返回false，由调用方按原方式处理）。
+    // 离开在宽限期内不计入汇总，期间同一用户再次加入（含断线续传）时两者抵消
+    boolean recordJoin(Long roomId, String username);
+    boolean recordLeave(Long roomId, String username);
+    // 断线续传回到房间：抵消宽限期内该用户的离开，不计为加入；旧会话的断开事件晚于续传到达时同样抵消
+    boolean recordResume(Long roomId, String username);
+    int getLargeRoomCount();
+}
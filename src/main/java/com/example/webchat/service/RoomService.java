@@ -1,6 +1,8 @@
 package com.example.webchat.service;
 
+import com.example.webchat.dto.RetentionPolicy;
 import com.example.webchat.entity.Room;
+import com.example.webchat.entity.User;
 
 import java.util.List;
 import java.util.Optional;
@@ -8,7 +10,15 @@ import java.util.Optional;
 public interface RoomService {
     Room saveRoom(Room room);
     Optional<Room> findById(Long id);
+    // 房间列表不包含私信房间
     List<Room> findAll();
     List<Room> findByIsPrivate(Boolean isPrivate);
     void deleteById(Long id);
+    // 只有房间创建者可以修改保留策略
+    RetentionPolicy updateRetention(Long roomId, RetentionPolicy policy, String username);
+    // 私信房间只有收发双方可以查看历史、续传、发送和加入，其他房间不限制；
+    // 无权访问时抛出异常。user 为空表示未登录
+    void checkAccess(Room room, User user);
+    // 按用户名检查并返回房间，username 为空表示未登录
+    Room checkAccess(Long roomId, String username);
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.example.webchat.service;
+
+import java.nio.file.Path;
+
+public interface ThumbnailService {
+    void generate(Path source, Path target);
+}
@@ -0,0 +1,14 @@
+package com.example.webchat.service;
+
+import com.example.webchat.entity.Message;
+
+/**
+ * 按用户定向投递：通过会话注册表找到用户的在线会话，逐个会话发送，不经过房间主题
+ */
+public interface UserDeliveryService {
+    // 返回实际投递的会话数，用户不在线时为0
+    int sendToUser(String username, String destination, Object payload);
+    void sendToSession(String sessionId, String destination, Object payload);
+    // 通知房间消息中 @用户名 提及的在线房间成员，返回被通知的用户数
+    int notifyMentions(Message message);
+}
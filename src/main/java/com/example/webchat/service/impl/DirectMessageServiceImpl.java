@@ -0,0 +1,89 @@
+package com.example.webchat.service.impl;
+
+import com.example.webchat.entity.Room;
+import com.example.webchat.entity.RoomMember;
+import com.example.webchat.entity.User;
+import com.example.webchat.repository.RoomMemberRepository;
+import com.example.webchat.repository.RoomRepository;
+import com.example.webchat.repository.UserRepository;
+import com.example.webchat.service.DirectMessageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+public class DirectMessageServiceImpl implements DirectMessageService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private RoomMemberRepository roomMemberRepository;
+
+    // 用户对 -> 私信房间ID，命中时发私信不再查询用户和房间。按最近使用淘汰，条数不随用户对数量无限增长
+    private final Map<String, Long> roomIds;
+
+    public DirectMessageServiceImpl(@Value("${webchat.dm.room-cache-size:10000}") int cacheSize) {
+        this.roomIds = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @Override
+    public Long resolveRoomId(String sender, String recipient) {
+        if (sender.equals(recipient)) {
+            throw new RuntimeException("Cannot send a direct message to yourself");
+        }
+        String key = sender.compareTo(recipient) < 0 ? sender + '\u0000' + recipient : recipient + '\u0000' + sender;
+        Long roomId = roomIds.get(key);
+        if (roomId != null) {
+            return roomId;
+        }
+        User from = userRepository.findByUsername(sender).orElseThrow(() -> new RuntimeException("User not found: " + sender));
+        User to = userRepository.findByUsername(recipient).orElseThrow(() -> new RuntimeException("User not found: " + recipient));
+        // 未命中时串行查找或创建，避免同一对用户同时首次私信时创建两个房间
+        synchronized (this) {
+            roomId = roomIds.get(key);
+            if (roomId == null) {
+                roomId = findOrCreateRoom(from, to).getId();
+                roomIds.put(key, roomId);
+            }
+        }
+        return roomId;
+    }
+
+    // 房间名按用户ID排序生成，两人无论谁先发私信都对应同一个房间
+    private Room findOrCreateRoom(User from, User to) {
+        Long low = Math.min(from.getId(), to.getId());
+        Long high = Math.max(from.getId(), to.getId());
+        String name = ROOM_NAME_PREFIX + low + ":" + high;
+        return roomRepository.findFirstByNameAndIsPrivateOrderByIdAsc(name, true).orElseGet(() -> {
+            Room room = new Room();
+            room.setName(name);
+            room.setIsPrivate(true);
+            room.setCreatedBy(from.getId());
+            Room saved = roomRepository.save(room);
+            addMember(saved.getId(), from.getId());
+            addMember(saved.getId(), to.getId());
+            return saved;
+        });
+    }
+
+    private void addMember(Long roomId, Long userId) {
+        RoomMember member = new RoomMember();
+        member.setRoomId(roomId);
+        member.setUserId(userId);
+        member.setRole("member");
+        roomMemberRepository.save(member);
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.webchat.service.impl;
+
+import com.example.webchat.dto.StoredFile;
+import com.example.webchat.metrics.ChatMetrics;
+import com.example.webchat.service.FileStorageService;
+import com.example.webchat.service.ThumbnailService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地内容寻址存储：上传内容边读边写入临时文件并计算SHA-256，完成后原子移动到 objects/前两位/哈希，
+ * 相同内容只保存一份。整个过程只占用一个固定大小的缓冲区，不会把文件整体读入堆内存
+ */
+@Service
+public class FileStorageServiceImpl implements FileStorageService {
+
+    private static final Pattern FILE_URL = Pattern.compile("^/files/([0-9a-f]{64})/([^/]+)$");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private ChatMetrics chatMetrics;
+
+    private final Path objectsDir;
+    private final Path thumbnailsDir;
+    private final Path tmpDir;
+    private final long maxSize;
+
+    public FileStorageServiceImpl(@Value("${webchat.files.storage-dir:data/files}") String storageDir,
+                                  @Value("${webchat.files.max-size:50MB}") DataSize maxSize) throws IOException {
+        Path root = Paths.get(storageDir).toAbsolutePath().normalize();
+        this.objectsDir = Files.createDirectories(root.resolve("objects"));
+        this.thumbnailsDir = Files.createDirectories(root.resolve("thumbnails"));
+        // 临时文件与正式文件在同一文件系统，保证可以原子移动
+        this.tmpDir = Files.createDirectories(root.resolve("tmp"));
+        this.maxSize = maxSize.toBytes();
+    }
+
+    @Override
+    public StoredFile store(InputStream in, String fileName) throws IOException {
+        String name = sanitizeFileName(fileName);
+        long start = System.nanoTime();
+        MessageDigest digest = sha256();
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        try {
+            long size = 0;
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    size += n;
+                    if (size > maxSize) {
+                        throw new MaxUploadSizeExceededException(maxSize);
+                    }
+                    digest.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                }
+            }
+            if (size == 0) {
+                throw new RuntimeException("文件内容为空");
+            }
+
+            String hash = toHex(digest.digest());
+            Path target = objectPath(hash);
+            boolean deduplicated = Files.exists(target);
+            if (!deduplicated) {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // 并发上传了相同内容
+                    deduplicated = true;
+                }
+            }
+
+            StoredFile stored = describe(hash, name, size);
+            if (stored.getThumbnailUrl() != null && !Files.exists(getThumbnail(hash))) {
+                thumbnailService.generate(target, getThumbnail(hash));
+            }
+            chatMetrics.recordUpload(size, System.nanoTime() - start, deduplicated);
+            return stored;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // 校验客户端提交的文件地址，返回服务端重新生成的描述；格式不对或文件不存在时返回null
+    @Override
+    public StoredFile resolve(String fileUrl) {
+        if (fileUrl == null) {
+            return null;
+        }
+        Matcher matcher = FILE_URL.matcher(fileUrl);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String hash = matcher.group(1);
+        Path file = getFile(hash);
+        if (file == null) {
+            return null;
+        }
+        try {
+            String name = sanitizeFileName(UriUtils.decode(matcher.group(2), StandardCharsets.UTF_8));
+            return describe(hash, name, Files.size(file));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Path getFile(String hash) {
+        Path file = objectPath(hash);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    @Override
+    public Path getThumbnail(String hash) {
+        return thumbnailsDir.resolve(hash.substring(0, 2)).resolve(hash + ".jpg");
+    }
+
+    private StoredFile describe(String hash, String name, long size) {
+        MediaType contentType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        String url = "/files/" + hash + "/" + UriUtils.encodePathSegment(name, StandardCharsets.UTF_8);
+        String thumbnailUrl = isImage(contentType) ? "/files/thumbnails/" + hash + ".jpg" : null;
+        return new StoredFile(hash, name, size, contentType.toString(), url, thumbnailUrl);
+    }
+
+    // SVG可以包含脚本，按普通文件处理
+    public static boolean isImage(MediaType contentType) {
+        return "image".equals(contentType.getType()) && !contentType.getSubtype().contains("svg");
+    }
+
+    private Path objectPath(String hash) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    // 只保留文件名部分，去掉路径和控制字符
+    private static String sanitizeFileName(String fileName) {
+        String name = StringUtils.getFilename(StringUtils.cleanPath(fileName == null ? "" : fileName));
+        name = name == null ? "" : name.replaceAll("[\\p{Cntrl}\\\\/]", "").trim();
+        if (name.isEmpty() || name.equals("..")) {
+            name = "file";
+        }
+        return name.length() > 200 ? name.substring(name.length() - 200) : name;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
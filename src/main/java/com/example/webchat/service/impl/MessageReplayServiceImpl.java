@@ -0,0 +1,215 @@
+package com.example.webchat.service.impl;
+
+import com.example.webchat.dto.ReplayBatch;
+import com.example.webchat.entity.Message;
+import com.example.webchat.entity.User;
+import com.example.webchat.metrics.ChatMetrics;
+import com.example.webchat.repository.MessageRepository;
+import com.example.webchat.repository.UserRepository;
+import com.example.webchat.service.MessageReplayService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 断线重连续传：每个房间在内存中保留最近的广播消息，
+ * 客户端带着最后收到的消息ID重连时优先从缓冲区补发缺口，缓冲区覆盖不到时按ID做键集查询。
+ * 并发发送时ID较小的消息可能晚于ID较大的消息提交和广播，因此除了该ID之后的消息，
+ * 还补发创建时间在该消息之前 lookback 以内的消息，客户端按消息ID去重
+ */
+@Service
+public class MessageReplayServiceImpl implements MessageReplayService {
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatMetrics chatMetrics;
+
+    // 每个房间缓冲的消息条数
+    @Value("${webchat.replay.buffer-size:200}")
+    private int bufferSize;
+
+    // 单次续传最多补发的消息条数，超过时让客户端重新加载历史
+    @Value("${webchat.replay.max-messages:500}")
+    private int maxMessages;
+
+    // 最多缓冲的房间数，超过时淘汰最久没有新消息的房间，其续传改为查询数据库
+    @Value("${webchat.replay.max-rooms:1000}")
+    private int maxRooms;
+
+    // 向前回看的时间窗口，覆盖保存耗时内ID乱序提交的消息
+    @Value("${webchat.replay.lookback:PT5S}")
+    private Duration lookback;
+
+    private final Map<Long, RoomBuffer> buffers = new ConcurrentHashMap<>();
+
+    @Override
+    public void append(Message message) {
+        RoomBuffer buffer = buffers.get(message.getRoomId());
+        if (buffer == null) {
+            buffer = buffers.computeIfAbsent(message.getRoomId(), id -> new RoomBuffer());
+            if (buffers.size() > maxRooms) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        buffer.add(message, bufferSize);
+    }
+
+    // 只在新建房间缓冲区时扫描一次；被淘汰的缓冲区即使随后还有追加也不再可见，续传回退到数据库，结果仍然正确
+    private void evictLeastRecentlyUsed() {
+        while (buffers.size() > maxRooms) {
+            Map.Entry<Long, RoomBuffer> oldest = null;
+            for (Map.Entry<Long, RoomBuffer> entry : buffers.entrySet()) {
+                if (oldest == null || entry.getValue().lastAppendNanos - oldest.getValue().lastAppendNanos < 0) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            buffers.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    @Override
+    public ReplayBatch replay(Long roomId, Long lastMessageId) {
+        if (lastMessageId == null) {
+            return new ReplayBatch(roomId, Collections.emptyList(), true);
+        }
+
+        RoomBuffer buffer = buffers.get(roomId);
+        List<Message> buffered = buffer != null ? buffer.after(lastMessageId, lookback) : null;
+        if (buffered != null) {
+            chatMetrics.recordReplay("buffer", buffered.size());
+            return new ReplayBatch(roomId, buffered, false);
+        }
+
+        // 多取一条用于判断是否超过上限。不加只读事务，保证从主库读取，不受从库复制延迟影响
+        List<Message> messages = messageRepository.findByRoomIdAndIdGreaterThanOrderByIdAsc(
+                roomId, lastMessageId, PageRequest.of(0, maxMessages + 1));
+        if (messages.size() > maxMessages) {
+            chatMetrics.recordReplay("truncated", 0);
+            return new ReplayBatch(roomId, Collections.emptyList(), true);
+        }
+        // 回看窗口按 (room_id, created_at) 索引查询；该消息已被清理时无法确定窗口，只补发之后的消息
+        Message last = messageRepository.findById(lastMessageId).orElse(null);
+        if (last != null && roomId.equals(last.getRoomId()) && last.getCreatedAt() != null) {
+            List<Message> lookbackMessages = new ArrayList<>(
+                    messageRepository.findByRoomIdAndIdLessThanAndCreatedAtGreaterThanEqualOrderByIdAsc(
+                            roomId, lastMessageId, last.getCreatedAt().minus(lookback)));
+            lookbackMessages.addAll(messages);
+            messages = lookbackMessages;
+        }
+        fillSenderNames(messages);
+        for (Message message : messages) {
+            message.setMessageType(toClientType(message.getMessageType()));
+        }
+        chatMetrics.recordReplay("database", messages.size());
+        return new ReplayBatch(roomId, messages, false);
+    }
+
+    @Override
+    public void evict(Long roomId, Long maxId) {
+        RoomBuffer buffer = buffers.get(roomId);
+        if (buffer != null) {
+            buffer.evictThrough(maxId);
+        }
+    }
+
+    // 数据库中是存储类型（见 ChatController.toStorageType），转换回广播时的客户端类型，
+    // 与缓冲区补发的消息保持一致；'system' 只用于加入消息
+    private static String toClientType(String storageType) {
+        if (storageType == null || storageType.equals("text")) {
+            return "CHAT";
+        }
+        if (storageType.equals("system")) {
+            return "JOIN";
+        }
+        if (storageType.equals("image") || storageType.equals("file")) {
+            return storageType.toUpperCase();
+        }
+        return storageType;
+    }
+
+    // 一次查询回填所有发送者名字
+    private void fillSenderNames(List<Message> messages) {
+        Set<Long> senderIds = messages.stream()
+                .map(Message::getSenderId)
+                .filter(id -> id != null)
+                .collect(Collectors.toSet());
+        if (senderIds.isEmpty()) {
+            return;
+        }
+        Map<Long, String> names = userRepository.findAllById(senderIds).stream()
+                .collect(Collectors.toMap(User::getId, User::getUsername));
+        for (Message message : messages) {
+            message.setSenderName(names.get(message.getSenderId()));
+        }
+    }
+
+    private static class RoomBuffer {
+        private final TreeMap<Long, Message> messages = new TreeMap<>();
+        // 不大于该ID的消息可能不在缓冲区中（缓冲区创建前的消息或已被淘汰的消息）
+        private long floorId = -1;
+        private volatile long lastAppendNanos = System.nanoTime();
+
+        synchronized void add(Message message, int capacity) {
+            lastAppendNanos = System.nanoTime();
+            long id = message.getId();
+            if (floorId < 0) {
+                floorId = id - 1;
+            } else if (id <= floorId) {
+                return;
+            }
+            messages.put(id, message);
+            while (messages.size() > capacity) {
+                floorId = messages.pollFirstEntry().getKey();
+            }
+        }
+
+        // 已删除的消息移出缓冲区；之后早于 maxId 的续传改为查询数据库，只返回仍保留的消息
+        synchronized void evictThrough(long maxId) {
+            messages.headMap(maxId, true).clear();
+            if (floorId >= 0 && maxId > floorId) {
+                floorId = maxId;
+            }
+        }
+
+        // 缓冲区能完整覆盖 lastMessageId 之后的消息和回看窗口时返回这些消息（按ID排序），否则返回null
+        synchronized List<Message> after(long lastMessageId, Duration lookback) {
+            Message last = messages.get(lastMessageId);
+            if (last == null || last.getCreatedAt() == null) {
+                return null;
+            }
+            LocalDateTime cutoff = last.getCreatedAt().minus(lookback);
+            // 缓冲区中最早的消息也在窗口内时，更早的消息可能同样在窗口内但已不在缓冲区
+            if (!messages.firstEntry().getValue().getCreatedAt().isBefore(cutoff)) {
+                return null;
+            }
+            List<Message> result = new ArrayList<>();
+            for (Message message : messages.headMap(lastMessageId, false).values()) {
+                if (!message.getCreatedAt().isBefore(cutoff)) {
+                    result.add(message);
+                }
+            }
+            result.addAll(messages.tailMap(lastMessageId, false).values());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.webchat.service.impl;
+
+import com.example.webchat.entity.Room;
+import com.example.webchat.metrics.ChatMetrics;
+import com.example.webchat.repository.MessageRepository;
+import com.example.webchat.repository.RoomRepository;
+import com.example.webchat.service.MessageReplayService;
+import com.example.webchat.service.MessageRetentionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 消息保留清理：先按房间策略算出删除边界（该ID及之前的消息都要删除），
+ * 再沿 (room_id, id) 索引每批删除 chunk-size 条，每批一个短事务，避免长时间锁住 sendMessage 写入的表。
+ * 批次之间暂停，消息保存耗时升高时暂停时间加倍，恢复后回到初始间隔
+ */
+@Service
+public class MessageRetentionServiceImpl implements MessageRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageRetentionServiceImpl.class);
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageReplayService messageReplayService;
+
+    @Autowired
+    private ChatMetrics chatMetrics;
+
+    private final int chunkSize;
+    private final long chunkPauseMillis;
+    private final long maxPauseMillis;
+    private final long maxInsertLatencyNanos;
+
+    // 只在 retentionExecutor 单线程中使用
+    private long pauseMillis;
+
+    public MessageRetentionServiceImpl(@Value("${webchat.retention.chunk-size:500}") int chunkSize,
+                                       @Value("${webchat.retention.chunk-pause:PT0.1S}") Duration chunkPause,
+                                       @Value("${webchat.retention.max-pause:PT10S}") Duration maxPause,
+                                       @Value("${webchat.retention.max-insert-latency:PT0.05S}") Duration maxInsertLatency) {
+        this.chunkSize = chunkSize;
+        this.chunkPauseMillis = chunkPause.toMillis();
+        this.maxPauseMillis = maxPause.toMillis();
+        this.maxInsertLatencyNanos = maxInsertLatency.toNanos();
+    }
+
+    @Async("retentionExecutor")
+    @Scheduled(fixedDelayString = "${webchat.retention.purge-interval:PT10M}",
+            initialDelayString = "${webchat.retention.initial-delay:PT1M}")
+    @Override
+    public void purgeExpiredMessages() {
+        long start = System.nanoTime();
+        List<Room> rooms = roomRepository.findByRetentionDaysIsNotNullOrRetentionMaxMessagesIsNotNull();
+        int remaining = rooms.size();
+        long purged = 0;
+        pauseMillis = chunkPauseMillis;
+        chatMetrics.setRetentionRoomsRemaining(remaining);
+        try {
+            for (Room room : rooms) {
+                try {
+                    purged += purgeRoom(room);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    // 单个房间失败不影响其他房间，下一轮重试
+                    logger.warn("房间 {} 消息清理失败: {}", room.getId(), e.getMessage());
+                }
+                chatMetrics.setRetentionRoomsRemaining(--remaining);
+            }
+        } finally {
+            chatMetrics.setRetentionRoomsRemaining(0);
+        }
+        if (purged > 0) {
+            logger.info("消息保留清理完成: 房间 {} 个, 删除 {} 条, 耗时 {} ms",
+                    rooms.size(), purged, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+    }
+
+    private long purgeRoom(Room room) throws InterruptedException {
+        Long roomId = room.getId();
+        Long boundaryId = boundaryId(room);
+        if (boundaryId == null) {
+            return 0;
+        }
+        long purged = 0;
+        while (true) {
+            List<Long> ids = messageRepository.findIdsUpTo(roomId, boundaryId, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Long chunkMaxId = ids.get(ids.size() - 1);
+            long chunkStart = System.nanoTime();
+            int deleted = messageRepository.deleteUpTo(roomId, chunkMaxId);
+            chatMetrics.recordRetentionChunk(deleted, System.nanoTime() - chunkStart);
+            messageReplayService.evict(roomId, chunkMaxId);
+            purged += deleted;
+            if (ids.size() < chunkSize) {
+                break;
+            }
+            pause();
+        }
+        return purged;
+    }
+
+    // 按天数取截止时间前的最大消息ID，按条数取倒数第 maxMessages+1 条的ID，两者取较大者
+    private Long boundaryId(Room room) {
+        Long boundaryId = null;
+        if (room.getRetentionDays() != null) {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(room.getRetentionDays());
+            boundaryId = messageRepository.findMaxIdCreatedBefore(room.getId(), cutoff);
+        }
+        if (room.getRetentionMaxMessages() != null) {
+            List<Long> ids = messageRepository.findIdsNewestFirst(room.getId(),
+                    PageRequest.of(room.getRetentionMaxMessages(), 1));
+            if (!ids.isEmpty() && (boundaryId == null || ids.get(0) > boundaryId)) {
+                boundaryId = ids.get(0);
+            }
+        }
+        return boundaryId;
+    }
+
+    private void pause() throws InterruptedException {
+        if (chatMetrics.getRecentDbSaveNanos() > maxInsertLatencyNanos) {
+            pauseMillis = Math.min(Math.max(pauseMillis * 2, 1), maxPauseMillis);
+            chatMetrics.recordRetentionBackoff();
+        } else {
+            pauseMillis = chunkPauseMillis;
+        }
+        Thread.sleep(pauseMillis);
+    }
+}
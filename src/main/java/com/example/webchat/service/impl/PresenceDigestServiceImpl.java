@@ -0,0 +1,261 @@
+package com.example.webchat.service.impl;
+
+import com.example.webchat.dto.PresenceDigest;
+import com.example.webchat.metrics.ChatMetrics;
+import com.example.webchat.service.PresenceDigestService;
+import com.example.webchat.websocket.StompSessionRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class PresenceDigestServiceImpl implements PresenceDigestService {
+
+    // 汇总帧中最多列出的用户名数
+    private static final int SAMPLE_USERNAMES = 5;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private StompSessionRegistry sessionRegistry;
+
+    @Autowired
+    private ChatMetrics chatMetrics;
+
+    private final int largeRoomThreshold;
+    private final long minIntervalNanos;
+    private final long resumeGraceNanos;
+
+    private final Set<Long> largeRooms = ConcurrentHashMap.newKeySet();
+    private final Map<Long, RoomPresence> pending = new ConcurrentHashMap<>();
+
+    public PresenceDigestServiceImpl(@Value("${webchat.presence.large-room-threshold:200}") int largeRoomThreshold,
+                                     @Value("${webchat.presence.digest-min-interval:PT30S}") Duration minInterval,
+                                     @Value("${webchat.presence.resume-grace:PT30S}") Duration resumeGrace) {
+        this.largeRoomThreshold = largeRoomThreshold;
+        this.minIntervalNanos = minInterval.toNanos();
+        this.resumeGraceNanos = resumeGrace.toNanos();
+    }
+
+    // 在线人数达到阈值时进入大房间模式，降到阈值一半以下才退出，避免人数在阈值附近波动时来回切换
+    @Override
+    public boolean isLargeRoom(Long roomId) {
+        int online = online(roomId);
+        if (online >= largeRoomThreshold) {
+            largeRooms.add(roomId);
+            return true;
+        }
+        if (online < largeRoomThreshold / 2) {
+            largeRooms.remove(roomId);
+            return false;
+        }
+        return largeRooms.contains(roomId);
+    }
+
+    @Override
+    public boolean recordJoin(Long roomId, String username) {
+        if (!isLargeRoom(roomId)) {
+            return false;
+        }
+        pending.compute(roomId, (id, presence) -> {
+            RoomPresence result = presence != null ? presence : newPresence();
+            result.join(username);
+            return result;
+        });
+        chatMetrics.recordPresenceCoalesced("join");
+        return true;
+    }
+
+    @Override
+    public boolean recordLeave(Long roomId, String username) {
+        if (!isLargeRoom(roomId)) {
+            return false;
+        }
+        pending.compute(roomId, (id, presence) -> {
+            RoomPresence result = presence != null ? presence : newPresence();
+            result.leave(username, System.nanoTime());
+            return result;
+        });
+        chatMetrics.recordPresenceCoalesced("leave");
+        return true;
+    }
+
+    @Override
+    public boolean recordResume(Long roomId, String username) {
+        if (!isLargeRoom(roomId)) {
+            return false;
+        }
+        pending.compute(roomId, (id, presence) -> {
+            RoomPresence result = presence != null ? presence : newPresence();
+            result.resume(username, System.nanoTime());
+            return result;
+        });
+        chatMetrics.recordPresenceCoalesced("resume");
+        return true;
+    }
+
+    @Override
+    public int getLargeRoomCount() {
+        return largeRooms.size();
+    }
+
+    // 断开连接视为离开最后加入的房间；小房间没有离开消息，保持原行为
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(event.getMessage().getHeaders());
+        if (attributes != null && attributes.get("roomId") instanceof Long) {
+            recordLeave((Long) attributes.get("roomId"), (String) attributes.get("username"));
+        }
+    }
+
+    // 每个房间至多每 digest-min-interval 发送一帧汇总，没有新事件的周期不发送
+    @Scheduled(fixedDelayString = "${webchat.presence.digest-interval:PT5S}")
+    public void flushDigests() {
+        long now = System.nanoTime();
+        for (Long roomId : pending.keySet()) {
+            RoomPresence presence = pending.get(roomId);
+            if (presence == null) {
+                continue;
+            }
+            PresenceDigest digest = presence.drain(roomId, online(roomId), now);
+            if (digest != null) {
+                messagingTemplate.convertAndSend(topic(roomId), digest);
+                chatMetrics.recordPresenceDigest();
+            } else if (!largeRooms.contains(roomId)) {
+                // 已退出大房间模式且没有待发送的事件
+                pending.computeIfPresent(roomId, (id, p) -> p.isEmpty() ? null : p);
+            }
+        }
+    }
+
+    private RoomPresence newPresence() {
+        return new RoomPresence(minIntervalNanos, resumeGraceNanos);
+    }
+
+    private int online(Long roomId) {
+        return sessionRegistry.getSubscriberCount(topic(roomId));
+    }
+
+    private static String topic(Long roomId) {
+        return "/topic/chat/" + roomId + "/public";
+    }
+
+    // 离开先保留 resume-grace，期间同一用户重新加入（续传或addUser）时两者抵消，
+    // 断线重连潮之后不会出现"N人离开"而实际上所有人都已回来。
+    // 续传可能先于旧会话的断开事件到达，此时记下续传，宽限期内随后的离开直接抵消
+    private static class RoomPresence {
+        private final long minIntervalNanos;
+        private final long resumeGraceNanos;
+        private int joined;
+        private int left;
+        private final List<String> usernames = new ArrayList<>();
+        // 用户名 -> 尚未计入汇总的离开（次数和最后一次离开的时间）
+        private final Map<String, Held> heldLeaves = new HashMap<>();
+        // 用户名 -> 尚未与离开抵消的续传
+        private final Map<String, Held> heldResumes = new HashMap<>();
+        private long lastSentAt;
+
+        private RoomPresence(long minIntervalNanos, long resumeGraceNanos) {
+            this.minIntervalNanos = minIntervalNanos;
+            this.resumeGraceNanos = resumeGraceNanos;
+            // 首个汇总不必等待一个完整间隔
+            this.lastSentAt = System.nanoTime() - minIntervalNanos;
+        }
+
+        synchronized void join(String username) {
+            if (username != null && cancel(heldLeaves, username)) {
+                return;
+            }
+            joined++;
+            if (usernames.size() < SAMPLE_USERNAMES && username != null && !usernames.contains(username)) {
+                usernames.add(username);
+            }
+        }
+
+        synchronized void leave(String username, long now) {
+            if (username == null) {
+                left++;
+                return;
+            }
+            if (!cancel(heldResumes, username)) {
+                hold(heldLeaves, username, now);
+            }
+        }
+
+        synchronized void resume(String username, long now) {
+            if (username != null && !cancel(heldLeaves, username)) {
+                hold(heldResumes, username, now);
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return joined == 0 && left == 0 && heldLeaves.isEmpty() && heldResumes.isEmpty();
+        }
+
+        private static boolean cancel(Map<String, Held> held, String username) {
+            Held entry = held.get(username);
+            if (entry == null) {
+                return false;
+            }
+            if (--entry.count == 0) {
+                held.remove(username);
+            }
+            return true;
+        }
+
+        private static void hold(Map<String, Held> held, String username, long now) {
+            Held entry = held.computeIfAbsent(username, u -> new Held());
+            entry.count++;
+            entry.at = now;
+        }
+
+        // 超过宽限期仍未回来的离开计入汇总，未等到离开的续传直接丢弃
+        private void releaseHeld(long now) {
+            Iterator<Held> leaves = heldLeaves.values().iterator();
+            while (leaves.hasNext()) {
+                Held held = leaves.next();
+                if (now - held.at >= resumeGraceNanos) {
+                    left += held.count;
+                    leaves.remove();
+                }
+            }
+            heldResumes.values().removeIf(held -> now - held.at >= resumeGraceNanos);
+        }
+
+        // 距上次发送未满最小间隔或没有新事件时返回null，否则取出本周期的汇总并清零
+        synchronized PresenceDigest drain(Long roomId, int online, long now) {
+            releaseHeld(now);
+            if ((joined == 0 && left == 0) || now - lastSentAt < minIntervalNanos) {
+                return null;
+            }
+            PresenceDigest digest = new PresenceDigest(roomId, joined, left, new ArrayList<>(usernames), online,
+                    LocalDateTime.now());
+            joined = 0;
+            left = 0;
+            usernames.clear();
+            lastSentAt = now;
+            return digest;
+        }
+    }
+
+    private static class Held {
+        private int count;
+        private long at;
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.webchat.service.impl;
 
+import com.example.webchat.dto.RetentionPolicy;
 import com.example.webchat.entity.Room;
+import com.example.webchat.entity.User;
+import com.example.webchat.repository.RoomMemberRepository;
 import com.example.webchat.repository.RoomRepository;
+import com.example.webchat.repository.UserRepository;
+import com.example.webchat.service.DirectMessageService;
 import com.example.webchat.service.RoomService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -14,6 +19,14 @@ public class RoomServiceImpl implements RoomService {
     
     @Autowired
     private RoomRepository roomRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoomMemberRepository roomMemberRepository;
+
+    private static final String DIRECT_ROOM_PATTERN = DirectMessageService.ROOM_NAME_PREFIX + "%";
     
     @Override
     public Room saveRoom(Room room) {
@@ -27,16 +40,63 @@ public class RoomServiceImpl implements RoomService {
     
     @Override
     public List<Room> findAll() {
-        return roomRepository.findAll();
+        return roomRepository.findByNameNotLike(DIRECT_ROOM_PATTERN);
     }
     
     @Override
     public List<Room> findByIsPrivate(Boolean isPrivate) {
-        return roomRepository.findByIsPrivate(isPrivate);
+        return roomRepository.findByIsPrivateAndNameNotLike(isPrivate, DIRECT_ROOM_PATTERN);
     }
     
     @Override
     public void deleteById(Long id) {
         roomRepository.deleteById(id);
     }
+
+    @Override
+    public RetentionPolicy updateRetention(Long roomId, RetentionPolicy policy, String username) {
+        if (isInvalidLimit(policy.getMaxAgeDays()) || isInvalidLimit(policy.getMaxMessages())) {
+            throw new RuntimeException("保留天数和保留条数必须为正数");
+        }
+        Room room = roomRepository.findById(roomId).orElseThrow(() -> new RuntimeException("Room not found: " + roomId));
+        User user = userRepository.findByUsername(username).orElseThrow(() -> new RuntimeException("User not found: " + username));
+        if (!user.getId().equals(room.getCreatedBy())) {
+            throw new RuntimeException("只有房间创建者可以修改消息保留策略");
+        }
+        room.setRetentionDays(policy.getMaxAgeDays());
+        room.setRetentionMaxMessages(policy.getMaxMessages());
+        roomRepository.save(room);
+        return new RetentionPolicy(roomId, room.getRetentionDays(), room.getRetentionMaxMessages());
+    }
+
+    @Override
+    public void checkAccess(Room room, User user) {
+        if (!isDirectRoom(room)) {
+            return;
+        }
+        if (user == null
+                || (!user.getId().equals(room.getCreatedBy())
+                    && !roomMemberRepository.existsByRoomIdAndUserId(room.getId(), user.getId()))) {
+            throw new RuntimeException("Access denied to room: " + room.getId());
+        }
+    }
+
+    @Override
+    public Room checkAccess(Long roomId, String username) {
+        Room room = roomRepository.findById(roomId).orElseThrow(() -> new RuntimeException("Room not found: " + roomId));
+        if (isDirectRoom(room)) {
+            User user = username != null ? userRepository.findByUsername(username).orElse(null) : null;
+            checkAccess(room, user);
+        }
+        return room;
+    }
+
+    // 普通私有房间没有邀请或成员管理接口，成员只能通过 addUser 加入，因此只检查私信房间
+    private static boolean isDirectRoom(Room room) {
+        return room.getName() != null && room.getName().startsWith(DirectMessageService.ROOM_NAME_PREFIX);
+    }
+
+    private static boolean isInvalidLimit(Integer limit) {
+        return limit != null && limit <= 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.example.webchat.service.impl;
+
+import com.example.webchat.metrics.ChatMetrics;
+import com.example.webchat.service.ThumbnailService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+
+/**
+ * 在独立线程池中为图片生成JPEG缩略图。按缩略图尺寸设置解码子采样，大图不会整张解码到堆内存
+ */
+@Service
+public class ThumbnailServiceImpl implements ThumbnailService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailServiceImpl.class);
+
+    // 超过该像素数的图片不生成缩略图（防止解压炸弹）
+    private static final long MAX_PIXELS = 100_000_000L;
+
+    @Autowired
+    private ChatMetrics chatMetrics;
+
+    // 缩略图最长边
+    @Value("${webchat.files.thumbnail-size:320}")
+    private int thumbnailSize;
+
+    @Override
+    @Async("thumbnailExecutor")
+    public void generate(Path source, Path target) {
+        long start = System.nanoTime();
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                // 不支持的格式（如webp），客户端直接显示原图
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_PIXELS) {
+                    log.warn("event=file.thumbnail.skipped file={} width={} height={}", source.getFileName(), width, height);
+                    return;
+                }
+                // 子采样后保留约两倍缩略图尺寸，再平滑缩放
+                int subsampling = Math.max(1, Math.max(width, height) / (thumbnailSize * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                writeThumbnail(reader.read(0, param), target);
+            } finally {
+                reader.dispose();
+            }
+            chatMetrics.recordThumbnail(System.nanoTime() - start);
+        } catch (Exception e) {
+            log.warn("event=file.thumbnail.error file={} error={}", source.getFileName(), e.getMessage());
+        }
+    }
+
+    private void writeThumbnail(BufferedImage image, Path target) throws IOException {
+        double scale = Math.min(1.0, (double) thumbnailSize / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            // 透明背景填充为白色
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        // 先写临时文件再原子替换，下载方不会读到写了一半的缩略图
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "thumb-", ".part");
+        try {
+            ImageIO.write(thumbnail, "jpg", tmp.toFile());
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
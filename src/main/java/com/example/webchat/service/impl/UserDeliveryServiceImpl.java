@@ -0,0 +1,94 @@
+package com.example.webchat.service.impl;
+
+import com.example.webchat.dto.Notification;
+import com.example.webchat.entity.Message;
+import com.example.webchat.metrics.ChatMetrics;
+import com.example.webchat.repository.RoomMemberRepository;
+import com.example.webchat.service.UserDeliveryService;
+import com.example.webchat.websocket.StompSessionRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Service
+public class UserDeliveryServiceImpl implements UserDeliveryService {
+
+    // @后紧跟的用户名，前面不能是字母数字（排除邮箱地址），末尾的句点、连字符视为标点
+    private static final Pattern MENTION =
+            Pattern.compile("(?<![\\p{L}\\p{N}_])@([\\p{L}\\p{N}_](?:[\\p{L}\\p{N}_.-]{0,48}[\\p{L}\\p{N}_])?)");
+    // 单条消息最多通知的用户数，避免一条消息刷屏式提及
+    private static final int MAX_MENTIONS = 10;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private StompSessionRegistry sessionRegistry;
+
+    @Autowired
+    private ChatMetrics chatMetrics;
+
+    @Autowired
+    private RoomMemberRepository roomMemberRepository;
+
+    @Override
+    public int sendToUser(String username, String destination, Object payload) {
+        Set<String> sessionIds = sessionRegistry.getSessionIds(username);
+        for (String sessionId : sessionIds) {
+            sendToSession(sessionId, destination, payload);
+        }
+        chatMetrics.recordUserDelivery(destination, sessionIds.size());
+        return sessionIds.size();
+    }
+
+    // 会话没有Principal，以会话ID作为用户名并在消息头中带上同一会话ID，
+    // 由UserDestinationResolver直接解析到该会话订阅的 /user/queue/... 目的地
+    @Override
+    public void sendToSession(String sessionId, String destination, Object payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(sessionId, destination, payload, accessor.getMessageHeaders());
+    }
+
+    @Override
+    public int notifyMentions(Message message) {
+        String content = message.getContent();
+        if (content == null || content.indexOf('@') < 0) {
+            return 0;
+        }
+        Set<String> mentioned = new LinkedHashSet<>();
+        Matcher matcher = MENTION.matcher(content);
+        while (matcher.find() && mentioned.size() < MAX_MENTIONS) {
+            String username = matcher.group(1);
+            if (!username.equals(message.getSenderName())) {
+                mentioned.add(username);
+            }
+        }
+        // 只保留在线的房间成员：通知中带有消息内容，不能发给看不到该房间的用户
+        mentioned.removeIf(username -> sessionRegistry.getSessionIds(username).isEmpty());
+        if (mentioned.isEmpty()) {
+            return 0;
+        }
+        mentioned.retainAll(roomMemberRepository.findMemberUsernames(message.getRoomId(), mentioned));
+        if (mentioned.isEmpty()) {
+            return 0;
+        }
+        Notification notification = Notification.mention(message.getRoomId(), message.getId(),
+                message.getSenderName(), content);
+        int notified = 0;
+        for (String username : mentioned) {
+            if (sendToUser(username, "/queue/notifications", notification) > 0) {
+                notified++;
+            }
+        }
+        return notified;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.webchat.service.impl;
 
 import com.example.webchat.entity.User;
+import com.example.webchat.metrics.ChatMetrics;
 import com.example.webchat.repository.UserRepository;
 import com.example.webchat.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +20,9 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private ChatMetrics chatMetrics;
+    
     private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
     
     @Override
@@ -27,7 +31,9 @@ public class UserServiceImpl implements UserService {
         logger.info("用户信息 - Email: {}, PasswordHash: {}", user.getEmail(), user.getPasswordHash());
         try {
             // 加密密码
+            long start = System.nanoTime();
             String encodedPassword = passwordEncoder.encode(user.getPasswordHash());
+            chatMetrics.recordBcryptEncode(System.nanoTime() - start);
             user.setPasswordHash(encodedPassword);
             logger.info("密码加密完成");
             User savedUser = userRepository.save(user);
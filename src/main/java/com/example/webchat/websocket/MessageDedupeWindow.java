@@ -0,0 +1,94 @@
+package com.example.webchat.websocket;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 消息发送去重窗口：以"用户名 + 客户端幂等键"为键，在保存和广播之前判断是否为重发。
+ * 基于 ConcurrentHashMap.putIfAbsent 抢占，无需加锁；按插入顺序记录在队列中，
+ * 每次抢占时顺带淘汰超过存活时间或超出容量的旧记录
+ */
+@Component
+public class MessageDedupeWindow {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    public MessageDedupeWindow(@Value("${webchat.dedupe.ttl:120s}") Duration ttl,
+                               @Value("${webchat.dedupe.max-entries:100000}") int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 尝试抢占幂等键：首次出现返回null，调用方继续保存和广播；
+     * 重复出现返回已有记录（首次发送尚未完成时其消息ID为空）
+     */
+    public Entry claim(String username, String clientMessageId) {
+        long now = System.nanoTime();
+        evictExpired(now);
+        Entry entry = new Entry(key(username, clientMessageId), now);
+        Entry existing = entries.putIfAbsent(entry.key, entry);
+        if (existing == null) {
+            insertionOrder.add(entry);
+            return null;
+        }
+        return existing;
+    }
+
+    // 保存成功后记录消息ID，之后的重发直接确认该ID
+    public void complete(String username, String clientMessageId, Long messageId) {
+        Entry entry = entries.get(key(username, clientMessageId));
+        if (entry != null) {
+            entry.messageId = messageId;
+        }
+    }
+
+    // 保存失败时释放幂等键，允许客户端重试
+    public void release(String username, String clientMessageId) {
+        entries.remove(key(username, clientMessageId));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evictExpired(long now) {
+        Entry oldest;
+        while ((oldest = insertionOrder.peek()) != null
+                && (now - oldest.createdAt > ttlNanos || entries.size() > maxEntries)) {
+            if (insertionOrder.remove(oldest)) {
+                // 只移除同一条记录，键被释放后重新抢占的新记录不受影响
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    private static String key(String username, String clientMessageId) {
+        return username + '\u0000' + clientMessageId;
+    }
+
+    public static class Entry {
+        private final String key;
+        private final long createdAt;
+        private volatile Long messageId;
+
+        private Entry(String key, long createdAt) {
+            this.key = key;
+            this.createdAt = createdAt;
+        }
+
+        public Long getMessageId() {
+            return messageId;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.webchat.websocket;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 当前在线的STOMP会话及其订阅，由会话生命周期事件维护。
+ * 会话数和订阅数用于监控，会话对应的用户名和订阅目的地供其他功能查询；
+ * 另按用户名索引会话ID，定向投递（私信、提及通知）时直接取得该用户的会话，无需遍历所有会话；
+ * 按目的地统计订阅数，用于判断房间在线人数
+ */
+@Component
+public class StompSessionRegistry {
+
+    private final Map<String, SessionInfo> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionIdsByUser = new ConcurrentHashMap<>();
+    // 目的地 -> 订阅数，订阅数降为0时移除，不会因客户端订阅任意目的地而无限增长
+    private final Map<String, Integer> subscribersByDestination = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        String username = attributes != null ? (String) attributes.get("username") : null;
+        sessions.put(accessor.getSessionId(), new SessionInfo(username));
+        if (username != null) {
+            sessionIdsByUser.compute(username, (u, ids) -> {
+                Set<String> result = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                result.add(accessor.getSessionId());
+                return result;
+            });
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        SessionInfo session = sessions.get(accessor.getSessionId());
+        if (session != null && accessor.getSubscriptionId() != null && accessor.getDestination() != null
+                && session.subscriptions.put(accessor.getSubscriptionId(), accessor.getDestination()) == null) {
+            subscriptionCount.incrementAndGet();
+            subscribersByDestination.merge(accessor.getDestination(), 1, Integer::sum);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        SessionInfo session = sessions.get(accessor.getSessionId());
+        if (session != null && accessor.getSubscriptionId() != null) {
+            String destination = session.subscriptions.remove(accessor.getSubscriptionId());
+            if (destination != null) {
+                subscriptionCount.decrementAndGet();
+                removeSubscriber(destination);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionInfo session = sessions.remove(event.getSessionId());
+        if (session != null) {
+            subscriptionCount.addAndGet(-session.subscriptions.size());
+            session.subscriptions.values().forEach(this::removeSubscriber);
+            if (session.username != null) {
+                // 增删都在compute中进行，避免与同一用户的新连接交错时丢失其会话
+                sessionIdsByUser.computeIfPresent(session.username, (u, ids) -> {
+                    ids.remove(event.getSessionId());
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+
+    public int getSubscriberCount(String destination) {
+        return subscribersByDestination.getOrDefault(destination, 0);
+    }
+
+    private void removeSubscriber(String destination) {
+        subscribersByDestination.computeIfPresent(destination, (d, count) -> count > 1 ? count - 1 : null);
+    }
+
+    public String getUsername(String sessionId) {
+        SessionInfo session = sessions.get(sessionId);
+        return session != null ? session.username : null;
+    }
+
+    // 用户当前所有在线会话（多个标签页/设备），不在线时返回空集合
+    public Set<String> getSessionIds(String username) {
+        Set<String> ids = sessionIdsByUser.get(username);
+        return ids != null ? Collections.unmodifiableSet(ids) : Collections.emptySet();
+    }
+
+    private static class SessionInfo {
+        private final String username;
+        // 订阅ID -> 目的地
+        private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+
+        private SessionInfo(String username) {
+            this.username = username;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+-- 房间消息保留策略：最长保留天数、最多保留条数，为空表示不限制。
+-- 由 schema.sql 建立的库已有这些字段和索引，以版本1为基线后仍会执行本迁移，因此只补充缺少的部分
+ALTER TABLE rooms ADD COLUMN IF NOT EXISTS retention_days INT DEFAULT NULL;
+ALTER TABLE rooms ADD COLUMN IF NOT EXISTS retention_max_messages INT DEFAULT NULL;
+
+-- 按房间和消息ID的键集查询：保留策略分批删除、断线续传补发
+CREATE INDEX IF NOT EXISTS idx_room_message_id ON messages (room_id, id);
@@ -0,0 +1,23 @@
+-- 房间消息保留策略：最长保留天数、最多保留条数，为空表示不限制。
+-- 由 schema.sql 建立的库已有这些字段和索引，以版本1为基线后仍会执行本迁移，因此只补充缺少的部分
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns
+               WHERE table_schema = DATABASE() AND table_name = 'rooms' AND column_name = 'retention_days') = 0,
+              'ALTER TABLE rooms ADD COLUMN retention_days INT DEFAULT NULL', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns
+               WHERE table_schema = DATABASE() AND table_name = 'rooms' AND column_name = 'retention_max_messages') = 0,
+              'ALTER TABLE rooms ADD COLUMN retention_max_messages INT DEFAULT NULL', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 按房间和消息ID的键集查询：保留策略分批删除、断线续传补发
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'messages' AND index_name = 'idx_room_message_id') = 0,
+              'CREATE INDEX idx_room_message_id ON messages (room_id, id)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -24,6 +24,8 @@ CREATE TABLE rooms (
     created_by BIGINT UNSIGNED NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     max_members INT DEFAULT 0,
+    retention_days INT DEFAULT NULL,
+    retention_max_messages INT DEFAULT NULL,
     FOREIGN KEY (created_by) REFERENCES users(id) ON DELETE CASCADE,
     INDEX idx_is_private (is_private)
 );
@@ -50,5 +52,6 @@ CREATE TABLE messages (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (room_id) REFERENCES rooms(id) ON DELETE CASCADE,
     FOREIGN KEY (sender_id) REFERENCES users(id) ON DELETE CASCADE,
-    INDEX idx_room_created (room_id, created_at)
+    INDEX idx_room_created (room_id, created_at),
+    INDEX idx_room_message_id (room_id, id)
 );
\ No newline at end of file
@@ -159,17 +159,17 @@ function initWebSocketManager() {
     
     // 连接成功
     eventListeners.set('connected', webSocketManager.on('connected', (data) => {
-        const { roomId, username } = data;
+        const { roomId, resumed } = data;
         console.log('已连接到房间:', roomId);
         
-        // 显示连接成功消息
-        messageManager.showSuccessMessage('连接成功，欢迎回来！');
-        
-        // 发送用户加入消息
-        webSocketManager.sendJoinMessage(username);
-        
-        // 加载历史消息
-        messageManager.loadHistoryMessages(roomId);
+        // 断线重连时由服务器补发缺失的消息，不再重新加载历史
+        if (!resumed) {
+            // 显示连接成功消息
+            messageManager.showSuccessMessage('连接成功，欢迎回来！');
+            
+            // 加载历史消息（加入消息已由WebSocketManager在连接时发送）
+            loadHistory(roomId);
+        }
         
         // 发送队列中的消息
         if (webSocketManager.getMessageQueueSize() > 0) {
@@ -207,9 +207,6 @@ function initWebSocketManager() {
         
         messageManager.showSuccessMessage('重连成功！');
         
-        // 重新加载历史消息
-        messageManager.loadHistoryMessages(data.roomId);
-        
         // 发送队列中的消息
         if (webSocketManager.getMessageQueueSize() > 0) {
             messageManager.showSystemMessage({
@@ -220,6 +217,11 @@ function initWebSocketManager() {
         }
     }));
     
+    // 断线时间过长，补发的消息过多，改为重新加载历史
+    eventListeners.set('replay_truncated', webSocketManager.on('replay_truncated', (data) => {
+        loadHistory(data.roomId);
+    }));
+    
     // 心跳超时
     eventListeners.set('heartbeat_timeout', webSocketManager.on('heartbeat_timeout', (data) => {
         console.warn('心跳超时:', data);
@@ -244,10 +246,13 @@ function initWebSocketManager() {
     
     // 系统通知
     eventListeners.set('notification', webSocketManager.on('notification', (notification) => {
-        if (notification.severity === 'warning' || notification.severity === 'error') {
-            messageManager.showErrorMessage(notification.content);
-        } else {
-            messageManager.showSuccessMessage(notification.content);
+        messageManager.showNotification(notification);
+    }));
+
+    // 私信：自己在其他标签页发出的私信只同步，不提示
+    eventListeners.set('direct_message', webSocketManager.on('direct_message', (message) => {
+        if (message.senderName !== currentUsername) {
+            messageManager.showNotification({ type: 'DM', severity: 'info', senderName: message.senderName, content: message.content });
         }
     }));
     
@@ -270,10 +275,20 @@ function initWebSocketManager() {
         console.log(`已从房间 ${data.oldRoomId} 切换到房间 ${data.newRoomId}`);
         
         messageManager.clearMessages();
-        messageManager.loadHistoryMessages(data.newRoomId);
+        loadHistory(data.newRoomId);
     }));
 }
 
+/**
+ * 加载房间历史消息，并记录已收到的消息ID用于断线续传
+ * @param {number} roomId - 房间ID
+ */
+function loadHistory(roomId) {
+    return messageManager.loadHistoryMessages(roomId)
+        .then(messages => webSocketManager.trackMessages(messages))
+        .catch(error => console.error('加载历史消息失败:', error));
+}
+
 /**
  * 初始化消息发送功能
  */
@@ -410,8 +425,17 @@ async function sendMessage() {
         eventListeners.set(`messageSent_${messageId}`, { handler: messageSentHandler });
         eventListeners.set(`messageFailed_${messageId}`, { handler: messageFailedHandler });
         
-        // 异步发送消息
-        const sendResult = await webSocketManager.sendMessage(messageContent, currentUsername);
+        // 异步发送消息，本地消息ID同时作为幂等键，服务器确认后标记为已发送，失败确认（带error）标记为失败
+        const messageAckedHandler = (ack) => {
+            if (ack.clientMessageId === messageId) {
+                messageManager.updateMessageStatus(messageId, ack.error ? 'failed' : 'sent');
+                webSocketManager.off('message_acked', messageAckedHandler);
+            }
+        };
+        webSocketManager.on('message_acked', messageAckedHandler);
+        eventListeners.set(`messageAcked_${messageId}`, { handler: messageAckedHandler });
+
+        const sendResult = await webSocketManager.sendMessage(messageContent, currentUsername, 'CHAT', true, messageId);
         
         if (!sendResult) {
             messageManager.updateMessageStatus(messageId, 'failed');
@@ -430,6 +454,47 @@ async function sendMessage() {
     }
 }
 
+/**
+ * 发送文件或图片：先通过HTTP流式上传，再通过WebSocket发送文件地址
+ * @param {HTMLInputElement} input - 文件选择框
+ */
+async function sendFile(input) {
+    const file = input.files[0];
+    // 清空选择，允许再次选择同一文件
+    input.value = '';
+    if (!file) {
+        return;
+    }
+    if (!webSocketManager.isConnected()) {
+        messageManager.showErrorMessage('连接未建立，请等待重连或刷新页面');
+        return;
+    }
+
+    const attachButton = $('#attachButton');
+    attachButton.prop('disabled', true);
+    messageManager.showLoadingMessage();
+    try {
+        const response = await fetch(`/files?name=${encodeURIComponent(file.name)}`, {
+            method: 'POST',
+            headers: { 'Content-Type': file.type || 'application/octet-stream' },
+            body: file
+        });
+        if (!response.ok) {
+            throw new Error(await response.text() || `HTTP ${response.status}`);
+        }
+        const storedFile = await response.json();
+        if (!webSocketManager.sendFileMessage(storedFile, currentUsername)) {
+            messageManager.showErrorMessage('发送文件消息失败，请重试');
+        }
+    } catch (error) {
+        console.error('上传文件失败:', error);
+        messageManager.showErrorMessage(`上传文件失败: ${error.message || '未知错误'}`);
+    } finally {
+        messageManager.hideLoadingMessage();
+        attachButton.prop('disabled', false);
+    }
+}
+
 /**
  * 加入房间
  * @param {number} roomId - 房间ID
@@ -791,7 +856,7 @@ function setupErrorHandling() {
             if (!webSocketManager.isConnected() && webSocketManager.getCurrentRoomId()) {
                 setTimeout(() => {
                     messageManager.showSuccessMessage('正在尝试重新连接...');
-                    webSocketManager.connect(webSocketManager.getCurrentRoomId(), currentUsername);
+                    webSocketManager.connect(webSocketManager.getCurrentRoomId(), currentUsername, true, true);
                 }, 1000);
             }
         }
@@ -965,4 +1030,5 @@ function createRoom(name, description = '', isPrivate = false, maxMembers = 0) {
 window.joinRoom = joinRoom;
 window.logout = () => authManager.logout();
 window.sendMessage = sendMessage;
+window.sendFile = sendFile;
 window.createRoom = createRoom;
\ No newline at end of file
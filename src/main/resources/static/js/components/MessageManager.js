@@ -77,7 +77,7 @@ class MessageManager {
      * @param {Object} message - 消息对象
      * @param {string} message.senderName - 发送者名称
      * @param {string} message.content - 消息内容
-     * @param {string} message.messageType - 消息类型 (CHAT, JOIN, LEAVE, SYSTEM)
+     * @param {string} message.messageType - 消息类型 (CHAT, JOIN, LEAVE, SYSTEM, PRESENCE)
      * @param {string} message.createdAt - 创建时间
      * @param {boolean} isHistory - 是否为历史消息
      */
@@ -91,10 +91,16 @@ class MessageManager {
             return;
         }
         
+        // 自己发送的消息以服务器广播为准，移除本地的发送中占位
+        if (message.clientMessageId) {
+            $(`#message-${message.clientMessageId}`).remove();
+        }
+        
         // 检查是否需要显示日期分隔符
         this._checkAndShowDateSeparator(message.createdAt);
         
-        if (message.messageType === 'JOIN' || message.messageType === 'LEAVE' || message.messageType === 'SYSTEM') {
+        if (message.messageType === 'JOIN' || message.messageType === 'LEAVE' || message.messageType === 'SYSTEM'
+            || message.messageType === 'PRESENCE') {
             // 系统消息
             this._showSystemMessage(message, timestamp, isHistory);
         } else {
@@ -159,6 +165,25 @@ class MessageManager {
         this.scrollToBottom();
     }
     
+    /**
+     * 更新发送中消息的状态
+     * @param {string} messageId - 本地消息ID（即幂等键）
+     * @param {string} status - 'sent' 或 'failed'
+     */
+    updateMessageStatus(messageId, status) {
+        const bubble = $(`#message-${messageId} .message-bubble`);
+        if (bubble.length === 0) {
+            return;
+        }
+        bubble.removeClass('sending');
+        if (status === 'failed') {
+            bubble.addClass('failed');
+            bubble.find('.message-status').text('发送失败');
+        } else {
+            bubble.find('.message-status').remove();
+        }
+    }
+    
     /**
      * 检查并显示日期分隔符
      * @private
@@ -241,6 +266,9 @@ class MessageManager {
         } else if (message.messageType === 'SYSTEM') {
             content = `<em>${message.content}</em>`;
             messageClass = 'system-message';
+        } else if (message.messageType === 'PRESENCE') {
+            content = `<em>${this._escapeHtml(this._formatPresenceDigest(message))}</em>`;
+            messageClass = 'system-message';
         }
         
         const messageId = this.getMessageId(message);
@@ -278,8 +306,10 @@ class MessageManager {
         const avatarText = this.getAvatarText(message.senderName);
         const avatarColor = this.getAvatarColor(message.senderName);
         
-        // 为消息内容添加链接高亮和其他格式化
-        const formattedContent = this._formatMessageContent(message.content);
+        // 文件消息显示缩略图或下载链接，其余消息添加链接高亮和其他格式化
+        const formattedContent = message.fileUrl
+            ? this._formatAttachment(message)
+            : this._formatMessageContent(message.content);
         
         const messageId = this.getMessageId(message);
         const date = this.formatDate(message.createdAt);
@@ -321,6 +351,38 @@ class MessageManager {
         this.lastMessageId = messageId;
     }
 
+    /**
+     * 格式化文件消息：图片显示缩略图（尚未生成时回退为原图），其他文件显示下载链接
+     * @private
+     */
+    _formatAttachment(message) {
+        const fileName = this._escapeHtml(message.content || '文件');
+        const fileUrl = this._escapeHtml(message.fileUrl);
+        const messageType = (message.messageType || '').toUpperCase();
+
+        if (messageType === 'IMAGE') {
+            const hash = message.fileUrl.split('/')[2];
+            return `<a href="${fileUrl}" target="_blank" rel="noopener noreferrer">
+                        <img class="message-image" src="/files/thumbnails/${hash}.jpg" alt="${fileName}"
+                             onerror="this.onerror=null; this.src='${fileUrl}';">
+                    </a>`;
+        }
+        return `<a class="message-file" href="${fileUrl}" download="${fileName}">📎 ${fileName}</a>`;
+    }
+
+    /**
+     * 转义HTML特殊字符
+     * @private
+     */
+    _escapeHtml(text) {
+        return String(text)
+            .replace(/&/g, '&amp;')
+            .replace(/</g, '&lt;')
+            .replace(/>/g, '&gt;')
+            .replace(/"/g, '&quot;')
+            .replace(/'/g, '&#39;');
+    }
+
     /**
      * 格式化消息内容（如链接高亮等）
      * @private
@@ -419,6 +481,42 @@ class MessageManager {
         return errorMessageId;
     }
 
+    /**
+     * 大房间的加入/离开汇总，如"alice、bob等12人加入了聊天室，3人离开"
+     * @private
+     */
+    _formatPresenceDigest(digest) {
+        const parts = [];
+        if (digest.joined > 0) {
+            const names = (digest.usernames || []).join('、');
+            parts.push(names && digest.joined > (digest.usernames || []).length
+                ? `${names}等${digest.joined}人加入了聊天室`
+                : `${names || digest.joined + '人'}加入了聊天室`);
+        }
+        if (digest.left > 0) {
+            parts.push(`${digest.left}人离开`);
+        }
+        return `${parts.join('，')}（当前在线${digest.online}人）`;
+    }
+
+    /**
+     * 显示发给当前用户的通知（被提及、私信、出错），内容来自其他用户，先转义再显示
+     * @param {Object} notification - 通知（type、severity、content、senderName）
+     */
+    showNotification(notification) {
+        const content = this._escapeHtml(notification.content || '');
+        const sender = this._escapeHtml(notification.senderName || '');
+        if (notification.severity === 'warning' || notification.severity === 'error') {
+            this.showErrorMessage(content);
+        } else if (notification.type === 'MENTION') {
+            this.showSuccessMessage(`${sender} 提到了你: ${content}`);
+        } else if (notification.type === 'DM') {
+            this.showSuccessMessage(`${sender} 发来私信: ${content}`);
+        } else {
+            this.showSuccessMessage(content);
+        }
+    }
+
     /**
      * 显示成功消息
      * @param {string} message - 成功消息
@@ -22,12 +22,20 @@ class WebSocketManager {
         this.reconnectDelay = 3000;
         this.baseReconnectDelay = 3000; // 基础重连延迟
         this.messageQueue = []; // 消息队列，用于存储断连时的消息
+        this.inFlightMessages = new Map(); // 已发送、尚未收到带消息ID确认的消息：幂等键 → {destination, payload, retries}
+        this.pendingRetryDelay = 1000; // 确认为"处理中"时重发的间隔（毫秒）
+        this.maxPendingRetries = 10; // 连续收到"处理中"确认的重发次数上限，超过后视为发送失败
         this.eventSubscriptions = new Map(); // 事件订阅系统
+        this.stompSubscriptions = new Map(); // STOMP订阅，断开连接时清理（与事件订阅分开，避免清掉页面的事件监听）
         this.heartbeatInterval = null; // 心跳检测定时器
         this.lastHeartbeatTime = Date.now(); // 上次心跳时间
         this.heartbeatTimeout = 30000; // 心跳超时时间（毫秒）
         this.isAutoReconnectEnabled = true; // 是否启用自动重连
         this.isConnectionBroken = false; // 连接是否已断开
+        this.lastMessageId = null; // 当前房间收到的最大消息ID，重连时用于续传
+        this.lastMessageRoomId = null; // lastMessageId 所属的房间
+        this.seenMessageIds = new Set(); // 当前房间最近收到的消息ID，续传会补发回看窗口内已收到的消息，按ID去重
+        this.maxSeenMessageIds = 1000;
     }
 
     /**
@@ -35,9 +43,10 @@ class WebSocketManager {
      * @param {number} roomId - 房间ID
      * @param {string} username - 用户名
      * @param {boolean} autoReconnect - 是否自动重连
+     * @param {boolean} resume - 是否为断线重连（只补发缺失的消息，不重新加入房间）
      * @returns {Promise}
      */
-    connect(roomId, username, autoReconnect = true) {
+    connect(roomId, username, autoReconnect = true, resume = false) {
         return new Promise((resolve, reject) => {
             if (this.isConnecting) {
                 reject(new Error('正在连接中...'));
@@ -49,6 +58,14 @@ class WebSocketManager {
                 this.disconnect();
             }
 
+            // 切换到其他房间时不再续传
+            if (roomId !== this.lastMessageRoomId) {
+                this.lastMessageId = null;
+                this.lastMessageRoomId = roomId;
+                this.seenMessageIds.clear();
+            }
+            const resuming = resume && this.lastMessageId !== null;
+
             this.currentRoomId = roomId;
             this.currentUsername = username;
             this.isConnecting = true;
@@ -98,14 +115,28 @@ class WebSocketManager {
                     // 订阅系统通知
                     this._subscribeToSystemNotifications();
 
+                    // 订阅私信
+                    this._subscribeToDirectMessages();
+
                     // 订阅心跳响应
                     this._subscribeToHeartbeat();
 
-                    // 通知服务器用户加入
-                    this.stompClient.send(`/app/chat/${roomId}/addUser`, {}, JSON.stringify({
-                        senderName: username,
-                        messageType: 'JOIN'
-                    }));
+                    // 订阅发送确认
+                    this._subscribeToAcks();
+
+                    if (resuming) {
+                        // 断线重连：先订阅补发队列，再告诉服务器最后收到的消息ID
+                        this._subscribeToReplay(roomId);
+                        this.stompClient.send(`/app/chat/${roomId}/resume`, {}, JSON.stringify({
+                            lastMessageId: this.lastMessageId
+                        }));
+                    } else {
+                        // 通知服务器用户加入
+                        this.stompClient.send(`/app/chat/${roomId}/addUser`, {}, JSON.stringify({
+                            senderName: username,
+                            messageType: 'JOIN'
+                        }));
+                    }
 
                     // 启动心跳检测
                     this._startHeartbeatMonitoring();
@@ -113,9 +144,12 @@ class WebSocketManager {
                     // 发送队列中的消息
                     this._sendQueuedMessages();
 
+                    // 断开前已发出、尚未确认的消息用原幂等键重发，服务器已保存过的只回复确认
+                    this._resendInFlightMessages();
+
                     // 调用连接成功回调
                     this._callCallbacks(this.connectionCallbacks, roomId);
-                    this._emit('connected', { roomId: roomId, username: username });
+                    this._emit('connected', { roomId: roomId, username: username, resumed: resuming });
 
                     resolve(frame);
                 }, (error) => {
@@ -175,7 +209,7 @@ class WebSocketManager {
             });
 
             setTimeout(() => {
-                this.connect(roomId, username, true)
+                this.connect(roomId, username, true, true)
                     .then(() => {
                         console.log('重连成功');
                         this._emit('reconnected', { roomId: roomId, username: username });
@@ -271,39 +305,130 @@ class WebSocketManager {
             );
             
             // 保存订阅以便后续清理
-            this.eventSubscriptions.set(`room_${roomId}`, subscription);
+            this.stompSubscriptions.set(`room_${roomId}`, subscription);
         } catch (error) {
             console.error('订阅房间消息失败:', error);
             this._emit('error', { type: 'subscription', error: error });
         }
     }
     
+    /**
+     * 订阅断线续传的补发消息
+     * @private
+     */
+    _subscribeToReplay(roomId) {
+        try {
+            const subscription = this.stompClient.subscribe(
+                `/user/queue/replay`,
+                (messageOutput) => {
+                    try {
+                        const batch = JSON.parse(messageOutput.body);
+                        if (batch.truncated) {
+                            // 缺口过大，由页面重新加载完整历史
+                            this._emit('replay_truncated', { roomId: roomId });
+                        } else {
+                            batch.messages.forEach(message => this._handleMessage(message));
+                        }
+                        this._emit('replayed', { roomId: roomId, count: batch.messages.length, truncated: batch.truncated });
+                    } catch (parseError) {
+                        console.error('解析补发消息失败:', parseError);
+                        this._emit('error', { type: 'message_parse', error: parseError });
+                    }
+                    // 每次重连只补发一次
+                    subscription.unsubscribe();
+                    this.stompSubscriptions.delete('replay');
+                }
+            );
+
+            this.stompSubscriptions.set('replay', subscription);
+        } catch (error) {
+            console.error('订阅补发消息失败:', error);
+            this._emit('error', { type: 'subscription', error: error });
+        }
+    }
+
+    /**
+     * 记录已收到的消息ID（历史消息加载完成后调用），重连时从最大的ID之后续传
+     * @param {Array} messages - 消息数组
+     */
+    trackMessages(messages) {
+        if (!Array.isArray(messages)) return;
+        messages.forEach(message => this._trackMessageId(message));
+    }
+
+    /**
+     * 记录消息ID，已收到过的返回 false
+     * @private
+     */
+    _trackMessageId(message) {
+        if (!message || typeof message.id !== 'number' || message.roomId !== this.lastMessageRoomId) {
+            return true;
+        }
+        if (this.seenMessageIds.has(message.id)) {
+            return false;
+        }
+        this.seenMessageIds.add(message.id);
+        if (this.seenMessageIds.size > this.maxSeenMessageIds) {
+            // Set 按插入顺序迭代，淘汰最早记录的ID
+            this.seenMessageIds.delete(this.seenMessageIds.values().next().value);
+        }
+        if (this.lastMessageId === null || message.id > this.lastMessageId) {
+            this.lastMessageId = message.id;
+        }
+        return true;
+    }
+
     /**
      * 订阅系统通知
      * @private
      */
     _subscribeToSystemNotifications() {
         try {
-            if (this.currentUsername) {
-                const subscription = this.stompClient.subscribe(
-                    `/user/${this.currentUsername}/queue/notifications`,
-                    (messageOutput) => {
-                        try {
-                            const notification = JSON.parse(messageOutput.body);
-                            this._emit('notification', notification);
-                        } catch (parseError) {
-                            console.error('解析通知失败:', parseError);
-                        }
+            // 服务器按会话定向投递，目的地中不带用户名
+            const subscription = this.stompClient.subscribe(
+                `/user/queue/notifications`,
+                (messageOutput) => {
+                    try {
+                        const notification = JSON.parse(messageOutput.body);
+                        this._emit('notification', notification);
+                    } catch (parseError) {
+                        console.error('解析通知失败:', parseError);
                     }
-                );
-                
-                this.eventSubscriptions.set('system_notifications', subscription);
-            }
+                }
+            );
+            
+            this.stompSubscriptions.set('system_notifications', subscription);
         } catch (error) {
             console.warn('订阅系统通知失败:', error);
         }
     }
     
+    /**
+     * 订阅私信：收到的和自己在其他标签页发出的私信都从这里到达
+     * @private
+     */
+    _subscribeToDirectMessages() {
+        try {
+            const subscription = this.stompClient.subscribe(
+                `/user/queue/dm`,
+                (messageOutput) => {
+                    try {
+                        const message = JSON.parse(messageOutput.body);
+                        this._emit('direct_message', message);
+                    } catch (parseError) {
+                        console.error('解析私信失败:', parseError);
+                        this._emit('error', { type: 'message_parse', error: parseError });
+                    }
+                }
+            );
+
+            this.stompSubscriptions.set('direct_messages', subscription);
+        } catch (error) {
+            console.error('订阅私信失败:', error);
+            this._emit('error', { type: 'subscription', error: error });
+        }
+    }
+
     /**
      * 订阅心跳响应
      * @private
@@ -317,27 +442,132 @@ class WebSocketManager {
                 }
             );
             
-            this.eventSubscriptions.set('heartbeat', subscription);
+            this.stompSubscriptions.set('heartbeat', subscription);
         } catch (error) {
             console.warn('订阅心跳响应失败:', error);
         }
     }
 
+    /**
+     * 订阅发送确认：服务器按幂等键回复消息ID，重发的消息 duplicate 为 true。
+     * pending 为 true 时首次发送仍在处理中、结果未定，不视为已发送，稍后重发；
+     * error 非空时发送失败，不再重发，同样以 message_acked 事件通知页面（带 error）
+     * @private
+     */
+    _subscribeToAcks() {
+        try {
+            const subscription = this.stompClient.subscribe(
+                `/user/queue/acks`,
+                (messageOutput) => {
+                    try {
+                        const ack = JSON.parse(messageOutput.body);
+                        if (ack.error) {
+                            this.inFlightMessages.delete(ack.clientMessageId);
+                            this._emit('message_acked', ack);
+                            return;
+                        }
+                        if (ack.pending || ack.messageId == null) {
+                            this._retryInFlightMessage(ack.clientMessageId);
+                            return;
+                        }
+                        this.inFlightMessages.delete(ack.clientMessageId);
+                        this._emit('message_acked', ack);
+                    } catch (parseError) {
+                        console.error('解析发送确认失败:', parseError);
+                        this._emit('error', { type: 'message_parse', error: parseError });
+                    }
+                }
+            );
+
+            this.stompSubscriptions.set('acks', subscription);
+        } catch (error) {
+            console.error('订阅发送确认失败:', error);
+            this._emit('error', { type: 'subscription', error: error });
+        }
+    }
+
+    /**
+     * 发送带幂等键的消息，记录到收到带消息ID的确认为止
+     * @private
+     */
+    _sendTracked(destination, payload) {
+        this.inFlightMessages.set(payload.clientMessageId, { destination, payload, retries: 0 });
+        this.stompClient.send(destination, {}, JSON.stringify(payload));
+    }
+
+    /**
+     * 首次发送仍在处理中：稍后用同一幂等键重发。首次发送成功时服务器回复 duplicate 确认，
+     * 失败并释放幂等键时这次重发会被正常保存和广播。重发超过 maxPendingRetries 次视为失败；
+     * 连接断开期间不再定时重发，由重连后的 _resendInFlightMessages 统一重发
+     * @private
+     */
+    _retryInFlightMessage(clientMessageId) {
+        const entry = this.inFlightMessages.get(clientMessageId);
+        if (!entry) {
+            return;
+        }
+        if (entry.retries >= this.maxPendingRetries) {
+            this.inFlightMessages.delete(clientMessageId);
+            this._emit('message_acked', { clientMessageId: clientMessageId, messageId: null, error: '发送超时，请重试' });
+            return;
+        }
+        entry.retries++;
+        setTimeout(() => {
+            if (!this.inFlightMessages.has(clientMessageId) || !this.stompClient || !this.stompClient.connected) {
+                return;
+            }
+            try {
+                this.stompClient.send(entry.destination, {}, JSON.stringify(entry.payload));
+            } catch (error) {
+                console.warn('重发处理中的消息失败:', error);
+                this._retryInFlightMessage(clientMessageId);
+            }
+        }, this.pendingRetryDelay);
+    }
+
+    /**
+     * 重连后重发所有尚未确认的消息
+     * @private
+     */
+    _resendInFlightMessages() {
+        this.inFlightMessages.forEach((entry) => {
+            try {
+                this.stompClient.send(entry.destination, {}, JSON.stringify(entry.payload));
+            } catch (error) {
+                console.warn('重发未确认的消息失败:', error);
+            }
+        });
+    }
+
+    /**
+     * 生成客户端幂等键
+     * @private
+     */
+    _generateClientMessageId() {
+        if (window.crypto && typeof window.crypto.randomUUID === 'function') {
+            return window.crypto.randomUUID();
+        }
+        return `msg_${Date.now()}_${Math.random().toString(36).substr(2, 9)}`;
+    }
+
     /**
      * 发送消息
      * @param {string} content - 消息内容
      * @param {string} username - 发送者用户名
      * @param {string} messageType - 消息类型，默认为'CHAT'
      * @param {boolean} queueIfDisconnected - 断连时是否加入队列
+     * @param {string} clientMessageId - 幂等键，重发同一条消息时保持不变，未传入时自动生成
      * @returns {Promise<boolean>} 是否发送成功
      */
-    async sendMessage(content, username, messageType = 'CHAT', queueIfDisconnected = true) {
+    async sendMessage(content, username, messageType = 'CHAT', queueIfDisconnected = true, clientMessageId = null) {
         // 内容验证
         if (!content?.trim()) {
             console.warn('消息内容不能为空');
             return false;
         }
 
+        clientMessageId = clientMessageId || this._generateClientMessageId();
+
         // 连接状态检查
         if (!this.stompClient || !this.stompClient.connected || !this.currentRoomId) {
             if (queueIfDisconnected) {
@@ -346,6 +576,7 @@ class WebSocketManager {
                     content: content.trim(),
                     username: username,
                     messageType: messageType,
+                    clientMessageId: clientMessageId,
                     timestamp: Date.now()
                 };
                 
@@ -368,11 +599,12 @@ class WebSocketManager {
             senderName: username,
             content: content.trim(),
             messageType: messageType,
+            clientMessageId: clientMessageId,
             timestamp: new Date().toISOString()
         };
 
         try {
-            this.stompClient.send(`/app/chat/${this.currentRoomId}/sendMessage`, {}, JSON.stringify(chatMessage));
+            this._sendTracked(`/app/chat/${this.currentRoomId}/sendMessage`, chatMessage);
             
             // 发送成功事件
             this._emit('message_sent', chatMessage);
@@ -399,6 +631,69 @@ class WebSocketManager {
         }
     }
 
+    /**
+     * 发送私信：服务器保存在两人的私有房间中，只投递给收发双方
+     * @param {string} recipient - 接收者用户名
+     * @param {string} content - 消息内容
+     * @param {string} clientMessageId - 幂等键，未传入时自动生成
+     * @returns {boolean} 是否发送成功
+     */
+    sendDirectMessage(recipient, content, clientMessageId = null) {
+        if (!recipient || !content?.trim()) {
+            console.warn('私信接收者和内容不能为空');
+            return false;
+        }
+        if (!this.stompClient || !this.stompClient.connected) {
+            console.error('WebSocket未连接，无法发送私信');
+            return false;
+        }
+
+        const directMessage = {
+            content: content.trim(),
+            messageType: 'CHAT',
+            clientMessageId: clientMessageId || this._generateClientMessageId()
+        };
+
+        try {
+            this._sendTracked(`/app/dm/${recipient}`, directMessage);
+            return true;
+        } catch (error) {
+            console.error('发送私信失败:', error);
+            this._emit('message_send_failed', { message: directMessage, error: error });
+            return false;
+        }
+    }
+
+    /**
+     * 发送文件消息：文件已通过 POST /files 上传，这里只发送文件地址，服务器校验后广播文件名和地址
+     * @param {Object} file - 上传接口返回的文件信息（url、fileName等）
+     * @param {string} username - 发送者用户名
+     * @param {string} clientMessageId - 幂等键，未传入时自动生成
+     * @returns {boolean} 是否发送成功
+     */
+    sendFileMessage(file, username, clientMessageId = null) {
+        if (!this.stompClient || !this.stompClient.connected || !this.currentRoomId) {
+            console.error('WebSocket未连接，无法发送文件消息');
+            return false;
+        }
+
+        const fileMessage = {
+            senderName: username,
+            fileUrl: file.url,
+            clientMessageId: clientMessageId || this._generateClientMessageId()
+        };
+
+        try {
+            this._sendTracked(`/app/chat/${this.currentRoomId}/sendFile`, fileMessage);
+            this._emit('message_sent', { ...fileMessage, content: file.fileName });
+            return true;
+        } catch (error) {
+            console.error('发送文件消息失败:', error);
+            this._emit('message_send_failed', { message: fileMessage, error: error });
+            return false;
+        }
+    }
+
     /**
      * 发送用户加入消息
      * @param {string} username - 用户名
@@ -517,6 +812,10 @@ class WebSocketManager {
     _handleMessage(message) {
         // 更新最后活跃时间（用于心跳检测）
         this.lastHeartbeatTime = Date.now();
+        // 续传补发的回看窗口中有已经显示过的消息
+        if (!this._trackMessageId(message)) {
+            return;
+        }
         
         // 调用回调函数
         this._callCallbacks(this.messageCallbacks, message);
@@ -541,6 +840,15 @@ class WebSocketManager {
             const now = Date.now();
             const timeSinceLastHeartbeat = now - this.lastHeartbeatTime;
             
+            // 一段时间没有收到任何消息时主动发心跳，服务器只回复本会话
+            if (timeSinceLastHeartbeat > this.heartbeatTimeout / 3 && this.stompClient?.connected) {
+                try {
+                    this.stompClient.send('/app/heartbeat', {}, '');
+                } catch (error) {
+                    console.warn('发送心跳失败:', error);
+                }
+            }
+
             // 检查是否超时
             if (timeSinceLastHeartbeat > this.heartbeatTimeout) {
                 console.warn(`心跳超时: ${timeSinceLastHeartbeat}ms > ${this.heartbeatTimeout}ms`);
@@ -602,15 +910,17 @@ class WebSocketManager {
         
         messagesToSend.forEach(async (message) => {
             try {
+                // 沿用原来的幂等键，服务器已保存过的消息只会回复确认，不会重复广播
                 const chatMessage = {
-                    senderName: message.username,
+                    senderName: message.username || message.senderName,
                     content: message.content,
                     messageType: message.messageType,
+                    clientMessageId: message.clientMessageId,
                     timestamp: new Date().toISOString(),
                     isQueuedMessage: true
                 };
                 
-                this.stompClient.send(`/app/chat/${this.currentRoomId}/sendMessage`, {}, JSON.stringify(chatMessage));
+                this._sendTracked(`/app/chat/${this.currentRoomId}/sendMessage`, chatMessage);
                 
                 console.log('队列消息发送成功:', message.content.substring(0, 20) + (message.content.length > 20 ? '...' : ''));
                 
@@ -636,7 +946,7 @@ class WebSocketManager {
      * @private
      */
     _clearSubscriptions() {
-        this.eventSubscriptions.forEach((subscription, key) => {
+        this.stompSubscriptions.forEach((subscription, key) => {
             try {
                 if (subscription && typeof subscription.unsubscribe === 'function') {
                     subscription.unsubscribe();
@@ -646,7 +956,7 @@ class WebSocketManager {
             }
         });
         
-        this.eventSubscriptions.clear();
+        this.stompSubscriptions.clear();
     }
     
     /**
@@ -654,8 +964,9 @@ class WebSocketManager {
      */
     clearAllListeners() {
         try {
-            // 清除所有事件订阅
+            // 清除所有STOMP订阅和事件订阅
             this._clearSubscriptions();
+            this.eventSubscriptions.clear();
             
             // 清空所有回调数组
             this.connectionCallbacks = [];
@@ -701,6 +1012,21 @@ class WebSocketManager {
         };
     }
     
+    /**
+     * 取消事件订阅
+     * @param {string} eventName - 事件名称
+     * @param {Function} callback - 订阅时传入的回调函数
+     */
+    off(eventName, callback) {
+        const callbacks = this.eventSubscriptions.get(eventName);
+        if (callbacks) {
+            callbacks.delete(callback);
+            if (callbacks.size === 0) {
+                this.eventSubscriptions.delete(eventName);
+            }
+        }
+    }
+    
     /**
      * 触发事件
      * @private
@@ -941,10 +1267,10 @@ class WebSocketManager {
         
         try {
             // 先取消订阅当前房间
-            const currentSubscription = this.eventSubscriptions.get(`room_${this.currentRoomId}`);
+            const currentSubscription = this.stompSubscriptions.get(`room_${this.currentRoomId}`);
             if (currentSubscription) {
                 currentSubscription.unsubscribe();
-                this.eventSubscriptions.delete(`room_${this.currentRoomId}`);
+                this.stompSubscriptions.delete(`room_${this.currentRoomId}`);
             }
             
             // 记录旧房间ID